@@ -0,0 +1,73 @@
+package com.proxychecker.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор списка прокси: строковый {@code parseProxies} против потокового {@link ProxyListParser}.
+ * Список похож на настоящий: {@code ip:port}, немного пробелов, пустых строк и имен хостов.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ProxyListParsingBenchmark {
+
+    @Param( { "10000", "100000" } )
+    int lines;
+
+    private String text;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom( 42 );
+        StringBuilder builder = new StringBuilder( lines * 20 );
+        for( int i = 0; i < lines; i++ ) {
+            switch( random.nextInt( 50 ) ) {
+                case 0 -> builder.append( '\n' );
+                case 1 -> builder.append( "proxy" ).append( i ).append( ".example.com:8080\n" );
+                default -> builder.append( random.nextInt( 1, 224 ) ).append( '.' )
+                        .append( random.nextInt( 256 ) ).append( '.' )
+                        .append( random.nextInt( 256 ) ).append( '.' )
+                        .append( random.nextInt( 256 ) ).append( ':' )
+                        .append( random.nextInt( 1, 65536 ) )
+                        .append( random.nextInt( 10 ) == 0 ? " \r\n" : "\n" );
+            }
+        }
+        text = builder.toString();
+        bytes = text.getBytes( StandardCharsets.US_ASCII );
+    }
+
+    @Benchmark
+    public List<String> splitLines() {
+        return ProxyListDownloader.parseProxies( text );
+    }
+
+    @Benchmark
+    public int streamBytes( Blackhole blackhole ) throws IOException {
+        return ProxyListDownloader.parseStream( new ByteArrayInputStream( bytes ), ( address, port ) -> {
+            blackhole.consume( address );
+            blackhole.consume( port );
+        } ).parsed();
+    }
+}
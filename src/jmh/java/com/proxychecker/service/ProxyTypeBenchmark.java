@@ -0,0 +1,82 @@
+package com.proxychecker.service;
+
+import com.proxychecker.service.engine.ProxyHandshake;
+import com.proxychecker.service.engine.ProxyProtocol;
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.Ipv4;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор адреса прокси и определение типа: по порту и по ответу на рукопожатие.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ProxyTypeBenchmark {
+
+    private final String[] hosts = { "203.0.113.17", "8.8.8.8", "192.168.100.200", "1.2.3.4" };
+    private final int[] ports = { 80, 443, 1080, 3128, 8080 };
+
+    private ProxyHandshake handshake;
+    private ByteBuffer httpResponse;
+    private ByteBuffer socks4Response;
+    private ByteBuffer socks5Response;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        handshake = ProxyHandshake.forTarget( "1.1.1.1:443" );
+        httpResponse = ByteBuffer.wrap( "HTTP/1.1 200 Connection established\r\n\r\n".getBytes( StandardCharsets.US_ASCII ) );
+        socks4Response = ByteBuffer.wrap( new byte[]{ 0, 90, 0, 0, 0, 0, 0, 0 } );
+        socks5Response = ByteBuffer.wrap( new byte[]{ 5, 0 } );
+    }
+
+    @Benchmark
+    public long parseEndpoint() {
+        final int i = index++ & 3;
+        return Endpoints.pack( (int) Ipv4.parse( hosts[i] ), ports[i] );
+    }
+
+    @Benchmark
+    public String typeByPort() {
+        return ProxyCheckerService.getProxyType( ports[index++ % ports.length] );
+    }
+
+    @Benchmark
+    public int typeByHandshake() {
+        return handshake.response( ProxyProtocol.HTTP, 0, httpResponse )
+                + handshake.response( ProxyProtocol.SOCKS4, 0, socks4Response )
+                + handshake.response( ProxyProtocol.SOCKS5, 1, socks5Response );
+    }
+
+    @Benchmark
+    public ByteBuffer buildHandshakeRequest( RequestBuffer request ) {
+        final ByteBuffer buffer = request.buffer.clear();
+        handshake.request( ProxyProtocol.SOCKS5, 1, buffer );
+        return buffer;
+    }
+
+    /**
+     * Свой буфер запроса: ответы, которые разбирает {@link #typeByHandshake}, не перезаписываются
+     */
+    @State( Scope.Thread )
+    public static class RequestBuffer {
+        private final ByteBuffer buffer = ByteBuffer.allocate( 512 );
+    }
+}
@@ -0,0 +1,126 @@
+package com.proxychecker.service.engine;
+
+import ch.qos.logback.classic.Level;
+import com.proxychecker.service.HostConcurrencyLimiter;
+import com.proxychecker.service.ProxyCheckerMetrics;
+import com.proxychecker.service.ProxyCheckerService;
+import com.proxychecker.service.cluster.ClusterCoordinator;
+import com.proxychecker.service.geo.GeoIpService;
+import com.proxychecker.service.health.HealthStore;
+import com.proxychecker.service.pool.ProxyPool;
+import com.proxychecker.service.source.SourceFetcher;
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.Ipv4;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.proxychecker.constants.AppConstants.CHECK_MODE_NIO;
+import static com.proxychecker.constants.AppConstants.FAST_RESPONSE_MILLIS;
+import static com.proxychecker.constants.AppConstants.GEOJS_API_URL;
+
+/**
+ * Та же проверка, что в {@link SweepBenchmark}, но через {@link ProxyCheckerService#checkEndpoints}:
+ * проба движка, цепочка фьючерсов {@code checkNio}, страна из локальной базы, хранилище здоровья, пул
+ * и запись рабочего прокси в {@code ResultSink}. С {@code -prof gc} показатель {@code gc.alloc.rate.norm} —
+ * байт на проверку; разница с {@link SweepBenchmark} — цена сервисного слоя поверх движка.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CheckPathBenchmark {
+
+    private static final int ENDPOINTS = 3000;
+
+    /**
+     * Доли живых, мертвых и медленных адресов в процентах
+     */
+    @Param( { "100/0/0", "50/50/0", "40/40/20" } )
+    String mix;
+
+    @Param( { "NONE", "SOCKS5" } )
+    String protocol;
+
+    private LoopbackHarness harness;
+    private NioConnectEngine engine;
+    private ProxyCheckerService service;
+    private Path geoIpDir;
+    private long[] endpoints;
+    private int protocols;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Без Spring Boot logback пишет DEBUG: строка на каждый рабочий прокси попала бы в замер
+        ( (ch.qos.logback.classic.Logger) LoggerFactory.getLogger( Logger.ROOT_LOGGER_NAME ) ).setLevel( Level.WARN );
+
+        harness = new LoopbackHarness();
+        engine = new NioConnectEngine( 1024, 1000, "1.1.1.1:443", 200 );
+        protocols = "NONE".equals( protocol ) ? ProxyProtocol.NONE : ProxyProtocol.valueOf( protocol ).mask();
+
+        // Страна берется из локальной базы: без нее прокси с неизвестной страной не доходят до ResultSink
+        geoIpDir = Files.createTempDirectory( "geoip" );
+        final Path database = Files.writeString( geoIpDir.resolve( "ranges.csv" ), "127.0.0.0,127.255.255.255,US\n" );
+        final GeoIpService geoIpService = new GeoIpService( 65536, 1440, database.toString(), false, GEOJS_API_URL, 100, 50 );
+
+        // Подсетевой планировщик выключен: все адреса стенда в одной подсети, и замер упирался бы в его темп
+        service = new ProxyCheckerService( engine, geoIpService, new HostConcurrencyLimiter( 4 ),
+                new HealthStore( "", 10, 10, 1440 ), new ProxyPool( 5000 ),
+                new ProxyCheckerMetrics( new SimpleMeterRegistry(), engine ),
+                new ClusterCoordinator( "", 2000, 60000, 4, false, "" ), new SourceFetcher( "", 15000, 60000 ),
+                CHECK_MODE_NIO, 1000, 10000, false, true, "1.1.1.1:443", 200,
+                false, 500, 100, 0.95, FAST_RESPONSE_MILLIS, false, 50, 16, 0 );
+
+        String[] shares = mix.split( "/" );
+        int live = ENDPOINTS * Integer.parseInt( shares[0] ) / 100;
+        int dead = ENDPOINTS * Integer.parseInt( shares[1] ) / 100;
+        endpoints = new long[ENDPOINTS];
+        for( int i = 0; i < ENDPOINTS; i++ ) {
+            endpoints[i] = pack( i < live ? harness.live() : i < live + dead ? harness.dead() : harness.slow() );
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.shutdown();
+        engine.close();
+        harness.close();
+        try( var files = Files.list( geoIpDir ) ) {
+            for( Path file : files.toList() ) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( geoIpDir );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ENDPOINTS )
+    public int sweep() throws InterruptedException {
+        return service.checkEndpoints( endpoints, protocols ).size();
+    }
+
+    private static long pack( InetSocketAddress address ) {
+        return Endpoints.pack( (int) Ipv4.parse( address.getAddress().getHostAddress() ), address.getPort() );
+    }
+}
@@ -0,0 +1,78 @@
+package com.proxychecker.service.engine;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Набор локальных адресов для проверки списка без сети:
+ * живой SOCKS5-прокси, «медленный» порт, который принимает соединение и молчит,
+ * и закрытый порт, на котором подключение сразу отклоняется.
+ */
+final class LoopbackHarness implements AutoCloseable {
+
+    private final ServerSocket live;
+    private final ServerSocket slow;
+    private final InetSocketAddress dead;
+
+    LoopbackHarness() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        live = new ServerSocket( 0, 4096, loopback );
+        slow = new ServerSocket( 0, 4096, loopback );
+        try( ServerSocket closed = new ServerSocket( 0, 1, loopback ) ) {
+            dead = new InetSocketAddress( loopback, closed.getLocalPort() );
+        }
+        Thread.ofVirtual().start( () -> acceptLoop( live, true ) );
+        Thread.ofVirtual().start( () -> acceptLoop( slow, false ) );
+    }
+
+    InetSocketAddress live() {
+        return new InetSocketAddress( live.getInetAddress(), live.getLocalPort() );
+    }
+
+    InetSocketAddress slow() {
+        return new InetSocketAddress( slow.getInetAddress(), slow.getLocalPort() );
+    }
+
+    InetSocketAddress dead() {
+        return dead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        live.close();
+        slow.close();
+    }
+
+    private static void acceptLoop( ServerSocket server, boolean answer ) {
+        while( ! server.isClosed() ) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofVirtual().start( () -> serve( socket, answer ) );
+            } catch( IOException e ) {
+                return;
+            }
+        }
+    }
+
+    // Живой порт отвечает как SOCKS5 без аутентификации, медленный ждет, пока клиент не сдастся
+    private static void serve( Socket socket, boolean answer ) {
+        try( socket ) {
+            DataInputStream in = new DataInputStream( socket.getInputStream() );
+            if( answer ) {
+                OutputStream out = socket.getOutputStream();
+                in.readFully( new byte[3] );
+                out.write( new byte[]{ 5, 0 } );
+                in.readFully( new byte[10] );
+                out.write( new byte[]{ 5, 0, 0, 1, 0, 0, 0, 0, 0, 0 } );
+            }
+            in.read();
+        } catch( IOException ignored ) {
+            // Клиент закрыл соединение
+        }
+    }
+}
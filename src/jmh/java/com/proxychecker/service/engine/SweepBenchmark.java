@@ -0,0 +1,88 @@
+package com.proxychecker.service.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная проверка списка через {@link NioConnectEngine} на локальном стенде {@link LoopbackHarness}.
+ * Результат — проверок в секунду; с {@code -prof gc} — аллокации на проверку.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SweepBenchmark {
+
+    private static final int ENDPOINTS = 3000;
+
+    /**
+     * Доли живых, мертвых и медленных адресов в процентах
+     */
+    @Param( { "100/0/0", "50/50/0", "40/40/20" } )
+    String mix;
+
+    @Param( { "NONE", "SOCKS5" } )
+    String protocol;
+
+    private LoopbackHarness harness;
+    private NioConnectEngine engine;
+    private InetSocketAddress[] endpoints;
+    private int protocols;
+
+    @Setup
+    public void setUp() throws IOException {
+        harness = new LoopbackHarness();
+        engine = new NioConnectEngine( 1024, 1000, "1.1.1.1:443", 200 );
+        protocols = "NONE".equals( protocol ) ? ProxyProtocol.NONE : ProxyProtocol.valueOf( protocol ).mask();
+
+        String[] shares = mix.split( "/" );
+        int live = ENDPOINTS * Integer.parseInt( shares[0] ) / 100;
+        int dead = ENDPOINTS * Integer.parseInt( shares[1] ) / 100;
+        endpoints = new InetSocketAddress[ENDPOINTS];
+        for( int i = 0; i < ENDPOINTS; i++ ) {
+            endpoints[i] = i < live ? harness.live() : i < live + dead ? harness.dead() : harness.slow();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        engine.close();
+        harness.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ENDPOINTS )
+    public long sweep() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[ENDPOINTS];
+        for( int i = 0; i < ENDPOINTS; i++ ) {
+            futures[i] = engine.probe( endpoints[i], protocols );
+        }
+        CompletableFuture.allOf( futures ).join();
+
+        long working = 0;
+        for( CompletableFuture<?> future : futures ) {
+            if( ( (ProbeResult) future.join() ).isSuccess() ) {
+                working++;
+            }
+        }
+        return working;
+    }
+}
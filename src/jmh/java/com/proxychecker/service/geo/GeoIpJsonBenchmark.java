@@ -0,0 +1,72 @@
+package com.proxychecker.service.geo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответа geojs для пакета адресов и попадание в кеш стран.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class GeoIpJsonBenchmark {
+
+    private static final String[] COUNTRIES = { "US", "DE", "RU", "BR", "CN", "NL", "FR", "IN" };
+
+    @Param( { "1", "100" } )
+    int batchSize;
+
+    private GeoIpBatcher batcher;
+    private GeoIpCache cache;
+    private String body;
+    private int address;
+
+    @Setup
+    public void setUp() {
+        batcher = new GeoIpBatcher( HttpClient.newHttpClient(), "http://127.0.0.1:9/", batchSize, 50 );
+        cache = new GeoIpCache( 65536, TimeUnit.DAYS.toNanos( 1 ) );
+
+        StringBuilder builder = new StringBuilder( batchSize == 1 ? "" : "[" );
+        for( int i = 0; i < batchSize; i++ ) {
+            if( i > 0 ) {
+                builder.append( ',' );
+            }
+            builder.append( "{\"ip\":\"10.0." ).append( i / 256 ).append( '.' ).append( i % 256 )
+                    .append( "\",\"country\":\"" ).append( COUNTRIES[i % COUNTRIES.length] ).append( "\"}" );
+            cache.put( 0x0A000000 | i, COUNTRIES[i % COUNTRIES.length] );
+        }
+        body = builder.append( batchSize == 1 ? "" : "]" ).toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        batcher.close();
+    }
+
+    @Benchmark
+    public Map<String, String> parseBatch() {
+        return batcher.parseCountries( body );
+    }
+
+    @Benchmark
+    public String cacheHit() {
+        return cache.get( 0x0A000000 | ( address++ % batchSize ) );
+    }
+}
@@ -0,0 +1,83 @@
+package com.proxychecker.service.result;
+
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.util.Ipv4;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.proxychecker.constants.AppConstants.PROTOCOL_SOCKS5;
+
+/**
+ * Только запись одного результата рабочего прокси, без самой проверки: сборка {@link ProxyDto} в список
+ * против записи полями через {@link ResultSink} в колонки {@link ProxyResultSet}.
+ * С {@code -prof gc} показатель {@code gc.alloc.rate.norm} — байт на запись результата, а не на проверку:
+ * аллокации всей проверки меряет {@code CheckPathBenchmark}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ResultPathBenchmark {
+
+    private static final int ROWS = 1 << 16; // Список и набор пересоздаются, чтобы не расти до конца замера
+    private static final String[] COUNTRIES = { "US", "DE", "NL", "BR" };
+
+    private List<ProxyDto> dtos;
+    private ProxyResultSet results;
+    private ResultSink sink;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        dtos = new ArrayList<>( ROWS );
+        results = new ProxyResultSet( ROWS );
+        sink = ( address, port, proxyType, latencyMicros, country ) -> results.add( address, port, proxyType, latencyMicros, country );
+    }
+
+    @Benchmark
+    public int viaDto() {
+        final int i = next();
+        final long responseTime = 100 + ( i & 1023 );
+        final ProxyDto proxyDto = new ProxyDto()
+                .setHost( Ipv4.toString( 0x0A000000 | i ) )
+                .setPort( 1080 )
+                .setProxyType( PROTOCOL_SOCKS5 )
+                .setResponseTime( BigDecimal.valueOf( responseTime / 1000.0 ).setScale( 3, RoundingMode.HALF_UP ) )
+                .setCountry( COUNTRIES[i & 3] );
+        if( dtos.size() == ROWS ) {
+            dtos = new ArrayList<>( ROWS );
+        }
+        dtos.add( proxyDto );
+        return dtos.size();
+    }
+
+    @Benchmark
+    public int viaSink() {
+        final int i = next();
+        if( results.size() == ROWS ) {
+            results = new ProxyResultSet( ROWS );
+        }
+        sink.accept( 0x0A000000 | i, 1080, PROTOCOL_SOCKS5, ( 100 + ( i & 1023 ) ) * 1000, COUNTRIES[i & 3] );
+        return results.size();
+    }
+
+    private int next() {
+        return index++;
+    }
+}
@@ -1,10 +1,15 @@
 package com.proxychecker;
 
+import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@Push // Серверный push нужен UI для вывода прокси по мере проверки
 @SpringBootApplication
-public class ProxyCheckerApplication {
+@EnableScheduling // Фоновая перепроверка известных прокси
+public class ProxyCheckerApplication implements AppShellConfigurator {
 
     public static void main( String[] args ) {
         SpringApplication.run( ProxyCheckerApplication.class, args );
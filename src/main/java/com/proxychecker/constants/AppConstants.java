@@ -4,9 +4,18 @@ public class AppConstants {
     // Threads
     public static final Integer THREAD_POOL = 256;
 
+    // Check modes
+    public static final String CHECK_MODE_NIO     = "nio";
+    public static final String CHECK_MODE_POOL    = "pool";
+    public static final String CHECK_MODE_VIRTUAL = "virtual";
+
     // Resources
     public static final String RESOURCE_GITHUB = "GITHUB";
     public static final String RESOURCE_PROXY_LIST = "PROXY-LIST";
+    public static final String RESOURCE_ALL = "ALL";
+
+    // Все типы прокси сразу
+    public static final String PROXY_TYPE_ALL = "ALL";
 
     // API URLs
     public static final String GEOJS_API_URL  = "https://get.geojs.io/";
@@ -24,6 +33,19 @@ public class AppConstants {
     public static final String PROTOCOL_HTTP  = "HTTP";
     public static final String PROTOCOL_HTTPS = "HTTPS";
     public static final String PROTOCOL_SOCKS = "SOCKS";
+    public static final String PROTOCOL_SOCKS4 = "SOCKS4";
+    public static final String PROTOCOL_SOCKS5 = "SOCKS5";
 
     public static final int HTTP_PROXY_ERROR = -1;
+
+    // Порог быстрого прокси: зеленый статус в UI и досрочное завершение проверки
+    public static final int FAST_RESPONSE_MILLIS = 300;
+
+    public static final String COUNTRY_UNKNOWN = "Unknown";
+
+    // Сколько потоковый подписчик может не разбирать свой буфер, прежде чем его отключат
+    public static final int STREAM_SEND_TIMEOUT_MILLIS = 1000;
+
+    // Сколько ждать ответа geojs на пакет стран
+    public static final int GEOIP_TIMEOUT_MILLIS = 10_000;
 }
@@ -1,38 +1,276 @@
 package com.proxychecker.controller;
 
+import com.proxychecker.dto.GeoIpCacheStatsDto;
+import com.proxychecker.dto.HealthStoreStatsDto;
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.dto.ProxyPageDto;
+import com.proxychecker.dto.ProxyPoolStatsDto;
+import com.proxychecker.dto.SourceStatsDto;
 import com.proxychecker.service.ProxyCheckerService;
+import com.proxychecker.service.cluster.ClusterCoordinator;
+import com.proxychecker.service.cluster.ClusterProtocol;
+import com.proxychecker.service.geo.GeoIpService;
+import com.proxychecker.service.health.HealthStore;
+import com.proxychecker.service.pool.ProxyPool;
+import com.proxychecker.service.result.ProxyResultSet;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping( "/api/proxy" )
 public class ProxyCheckerController {
 
     private final ProxyCheckerService proxyCheckerService;
+    private final GeoIpService geoIpService;
+    private final HealthStore healthStore;
+    private final ProxyPool proxyPool;
+    private final ClusterCoordinator cluster;
 
-    public ProxyCheckerController( ProxyCheckerService proxyCheckerService ) {
+    public ProxyCheckerController( ProxyCheckerService proxyCheckerService,
+                                   GeoIpService geoIpService,
+                                   HealthStore healthStore,
+                                   ProxyPool proxyPool,
+                                   ClusterCoordinator cluster ) {
         this.proxyCheckerService = proxyCheckerService;
+        this.geoIpService = geoIpService;
+        this.healthStore = healthStore;
+        this.proxyPool = proxyPool;
+        this.cluster = cluster;
     }
 
     /**
-     * Проверка прокси серверов из открытого источника по типу прокси
+     * Проверка прокси серверов из открытого источника по типу прокси.
+     * Возвращает список рабочих прокси
      *
      * @param typeProxy - тип прокси
      * @param resource  - ресурс
+     * @param limit     - закончить проверку, как только найдено столько быстрых прокси; {@code 0} — проверить весь список
      */
     @GetMapping( "/check/{typeProxy}/{resource}" )
-    public ResponseEntity<String> checkProxies( @PathVariable String typeProxy,
-                                                @PathVariable String resource ) {
+    public ResponseEntity<?> checkProxies( @PathVariable String typeProxy,
+                                           @PathVariable String resource,
+                                           @RequestParam( defaultValue = "0" ) int limit ) {
         try {
-            proxyCheckerService.checkProxies( typeProxy, resource );
-            return ResponseEntity.ok( "Proxies checked successfully" );
+            return ResponseEntity.ok( proxyCheckerService.checkProxies( typeProxy, resource, limit ) );
         } catch( Exception e ) {
             return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
                     .body( e.getMessage() );
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Потоковая проверка прокси серверов (Server-Sent Events): каждый рабочий прокси
+     * отправляется событием {@code proxy} сразу после проверки
+     *
+     * @param typeProxy - тип прокси
+     * @param resource  - ресурс
+     * @param limit     - закончить проверку, как только найдено столько быстрых прокси; {@code 0} — проверить весь список
+     */
+    @GetMapping( value = "/check/{typeProxy}/{resource}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE )
+    public SseEmitter streamProxies( @PathVariable String typeProxy,
+                                     @PathVariable String resource,
+                                     @RequestParam( defaultValue = "0" ) int limit ) {
+        SseEmitter emitter = new SseEmitter( 0L ); // Без таймаута: проверка длится столько, сколько длится
+        proxyCheckerService.streamProxies( typeProxy, resource, limit ).subscribe( new SseProxySubscriber( emitter ) );
+        return emitter;
+    }
+
+    /**
+     * Результаты последней проверки постранично, без выдачи всего списка одним ответом
+     *
+     * @param page      - номер страницы, с нуля
+     * @param size      - размер страницы
+     * @param sort      - свойство сортировки: host, port, proxyType, responseTime, country; по умолчанию — в порядке проверки
+     * @param direction - asc или desc
+     */
+    @GetMapping( "/results" )
+    public ResponseEntity<?> getResults( @RequestParam( defaultValue = "0" ) int page,
+                                         @RequestParam( defaultValue = "100" ) int size,
+                                         @RequestParam( required = false ) String sort,
+                                         @RequestParam( defaultValue = "asc" ) String direction ) {
+        if( page < 0 || size <= 0 ) {
+            return ResponseEntity.badRequest().body( "Page must be non-negative and size must be positive" );
+        }
+        final ProxyResultSet results = proxyCheckerService.getLastResults();
+        try {
+            return ResponseEntity.ok( new ProxyPageDto()
+                    .setTotal( results.size() )
+                    .setPage( page )
+                    .setSize( size )
+                    .setItems( results.page( (int) Math.min( (long) page * size, Integer.MAX_VALUE ), size, sort,
+                            "desc".equalsIgnoreCase( direction ) ) ) );
+        } catch( IllegalArgumentException e ) {
+            return ResponseEntity.badRequest().body( e.getMessage() );
+        }
+    }
+
+    /**
+     * Выгрузка результатов последней проверки целиком: {@code ndjson} — построчный JSON в gzip,
+     * {@code binary} — колоночный бинарный формат {@link ProxyResultSet#writeBinary}
+     *
+     * @param format - ndjson или binary
+     */
+    @GetMapping( "/results/export" )
+    public ResponseEntity<StreamingResponseBody> exportResults( @RequestParam( defaultValue = "ndjson" ) String format ) {
+        final ProxyResultSet results = proxyCheckerService.getLastResults();
+        if( "binary".equalsIgnoreCase( format ) ) {
+            return ResponseEntity.ok()
+                    .header( HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"proxies.bin\"" )
+                    .contentType( MediaType.APPLICATION_OCTET_STREAM )
+                    .body( results::writeBinary );
+        }
+        if( ! "ndjson".equalsIgnoreCase( format ) ) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .header( HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"proxies.ndjson.gz\"" )
+                .contentType( MediaType.parseMediaType( "application/gzip" ) )
+                .body( out -> {
+                    GZIPOutputStream gzip = new GZIPOutputStream( out, 1 << 16 );
+                    results.writeNdjson( gzip );
+                    gzip.finish();
+                } );
+    }
+
+    /**
+     * Проверка пачки адресов по заданию координатора кластера, см. {@link ClusterProtocol}.
+     * Отвечает рабочими прокси в формате {@link ProxyResultSet#writeBinary}
+     *
+     * @param protocols - маска протоколов рукопожатия
+     * @param token     - общий ключ кластера
+     * @param body      - адреса, упакованные по 8 байт
+     */
+    @PostMapping( value = "/worker/check",
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            produces = MediaType.APPLICATION_OCTET_STREAM_VALUE )
+    public ResponseEntity<StreamingResponseBody> checkChunk( @RequestParam int protocols,
+                                                             @RequestHeader( value = ClusterProtocol.TOKEN_HEADER, required = false ) String token,
+                                                             @RequestBody byte[] body ) {
+        if( ! cluster.isWorker() ) {
+            return ResponseEntity.notFound().build();
+        }
+        if( ! cluster.isAuthorized( token ) ) {
+            return ResponseEntity.status( HttpStatus.UNAUTHORIZED ).build();
+        }
+        if( body.length > ClusterProtocol.MAX_CHUNK_SIZE * Long.BYTES ) {
+            return ResponseEntity.status( HttpStatus.PAYLOAD_TOO_LARGE ).build();
+        }
+        try {
+            final ProxyResultSet results = proxyCheckerService.checkEndpoints( ClusterProtocol.decode( body ), protocols );
+            return ResponseEntity.ok()
+                    .contentType( MediaType.APPLICATION_OCTET_STREAM )
+                    .body( results::writeBinary );
+        } catch( IllegalArgumentException e ) {
+            return ResponseEntity.badRequest().build();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE ).build();
+        }
+    }
+
+    /**
+     * Статистика кеша определения страны по IP
+     */
+    @GetMapping( "/geoip/cache" )
+    public ResponseEntity<GeoIpCacheStatsDto> getGeoIpCacheStats() {
+        return ResponseEntity.ok( geoIpService.getCacheStats() );
+    }
+
+    /**
+     * Статистика источников последней проверки: уникальные адреса и повторы по каждому источнику
+     */
+    @GetMapping( "/sources/stats" )
+    public ResponseEntity<List<SourceStatsDto>> getSourceStats() {
+        return ResponseEntity.ok( proxyCheckerService.getLastSourceStats() );
+    }
+
+    /**
+     * Состояние хранилища результатов проверок: сколько адресов известно, сколько живых и скольким пора на перепроверку
+     */
+    @GetMapping( "/health/stats" )
+    public ResponseEntity<HealthStoreStatsDto> getHealthStats() {
+        return ResponseEntity.ok( healthStore.getStats() );
+    }
+
+    /**
+     * Самые быстрые прокси из заранее проверенного пула, без запуска проверки
+     *
+     * @param type    - тип прокси, по умолчанию любой
+     * @param country - код страны, по умолчанию любая
+     * @param limit   - сколько прокси вернуть
+     */
+    @GetMapping( "/pool/best" )
+    public ResponseEntity<List<ProxyDto>> getBestProxies( @RequestParam( required = false ) String type,
+                                                          @RequestParam( required = false ) String country,
+                                                          @RequestParam( defaultValue = "1" ) int limit ) {
+        return ResponseEntity.ok( proxyPool.best( type, country, limit ) );
+    }
+
+    /**
+     * Состояние пула: сколько прокси в нем сейчас, сколько добавлено и вытеснено
+     */
+    @GetMapping( "/pool/stats" )
+    public ResponseEntity<ProxyPoolStatsDto> getPoolStats() {
+        return ResponseEntity.ok( proxyPool.getStats() );
+    }
+
+    /**
+     * Подписчик, пересылающий рабочие прокси в SSE-соединение по одному
+     */
+    private static class SseProxySubscriber implements Flow.Subscriber<ProxyDto> {
+
+        private final SseEmitter emitter;
+        private Flow.Subscription subscription;
+
+        private SseProxySubscriber( SseEmitter emitter ) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onSubscribe( Flow.Subscription subscription ) {
+            this.subscription = subscription;
+            // Клиент отключился — прекращаем получать прокси
+            emitter.onCompletion( subscription::cancel );
+            emitter.onError( e -> subscription.cancel() );
+            subscription.request( 1 );
+        }
+
+        @Override
+        public void onNext( ProxyDto proxyDto ) {
+            try {
+                emitter.send( SseEmitter.event().name( "proxy" ).data( proxyDto, MediaType.APPLICATION_JSON ) );
+                subscription.request( 1 );
+            } catch( IOException e ) {
+                subscription.cancel();
+                emitter.completeWithError( e );
+            }
+        }
+
+        @Override
+        public void onError( Throwable throwable ) {
+            emitter.completeWithError( throwable );
+        }
+
+        @Override
+        public void onComplete() {
+            emitter.complete();
+        }
+    }
+}
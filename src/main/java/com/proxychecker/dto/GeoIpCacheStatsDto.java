@@ -0,0 +1,28 @@
+package com.proxychecker.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors( chain = true )
+public class GeoIpCacheStatsDto {
+
+    @Schema( example = "1024", description = "Количество адресов в кеше" )
+    private int size;
+
+    @Schema( example = "5000", description = "Количество попаданий в кеш" )
+    private long hits;
+
+    @Schema( example = "1100", description = "Количество промахов кеша" )
+    private long misses;
+
+    @Schema( example = "76", description = "Количество вытесненных записей (по TTL и LRU)" )
+    private long evictions;
+
+    @Schema( example = "12", description = "Количество запросов, объединенных с уже выполняющимся" )
+    private long coalesced;
+
+    @Schema( example = "40", description = "Количество пакетных запросов во внешний API" )
+    private long remoteRequests;
+}
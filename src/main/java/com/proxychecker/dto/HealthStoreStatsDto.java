@@ -0,0 +1,22 @@
+package com.proxychecker.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors( chain = true )
+public class HealthStoreStatsDto {
+
+    @Schema( example = "25000", description = "Количество адресов, которые уже проверялись" )
+    private int tracked;
+
+    @Schema( example = "1800", description = "Количество адресов, рабочих при последней проверке" )
+    private int alive;
+
+    @Schema( example = "300", description = "Количество адресов, которым пора на перепроверку" )
+    private int due;
+
+    @Schema( example = "40000", description = "Количество записей в журнале состояний" )
+    private long logRecords;
+}
@@ -0,0 +1,24 @@
+package com.proxychecker.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@Accessors( chain = true )
+public class ProxyPageDto {
+
+    @Schema( example = "12000", description = "Общее количество рабочих прокси в результатах" )
+    private int total;
+
+    @Schema( example = "0", description = "Номер страницы, с нуля" )
+    private int page;
+
+    @Schema( example = "100", description = "Размер страницы" )
+    private int size;
+
+    @Schema( description = "Прокси на странице" )
+    private List<ProxyDto> items;
+}
@@ -0,0 +1,19 @@
+package com.proxychecker.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors( chain = true )
+public class ProxyPoolStatsDto {
+
+    @Schema( example = "1200", description = "Количество прокси в пуле" )
+    private int size;
+
+    @Schema( example = "5000", description = "Сколько прокси добавлено в пул с момента запуска" )
+    private long added;
+
+    @Schema( example = "3800", description = "Сколько прокси вытеснено из пула: не прошли перепроверку или оказались самыми медленными" )
+    private long evicted;
+}
@@ -0,0 +1,34 @@
+package com.proxychecker.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors( chain = true )
+public class SourceStatsDto {
+
+    @Schema( example = "https://raw.githubusercontent.com/TheSpeedX/PROXY-List/master/http.txt", description = "Адрес источника" )
+    private String source;
+
+    @Schema( example = "DOWNLOADED", description = "Откуда взят список: DOWNLOADED — скачан, NOT_MODIFIED — не изменился, взят из снимка, SNAPSHOT_FALLBACK — источник недоступен, взят из снимка" )
+    private String status;
+
+    @Schema( example = "1200", description = "Количество адресов, впервые встреченных в этом источнике" )
+    private int unique;
+
+    @Schema( example = "300", description = "Количество адресов, уже встреченных в этом или другом источнике" )
+    private int duplicate;
+
+    @Schema( example = "4", description = "Количество строк, которые не удалось разобрать" )
+    private int skipped;
+
+    @Schema( example = "150", description = "Количество адресов, которых не было в предыдущей загрузке источника" )
+    private int added;
+
+    @Schema( example = "90", description = "Количество адресов предыдущей загрузки, которых больше нет в источнике" )
+    private int removed;
+
+    @Schema( example = "false", description = "Не удалось загрузить источник" )
+    private boolean failed;
+}
@@ -0,0 +1,59 @@
+package com.proxychecker.service;
+
+import com.proxychecker.service.engine.ProbeResult;
+import com.proxychecker.util.LatencyHistogram;
+
+/**
+ * Таймаут подключения одного прохода по списку, подстраиваемый под задержки уже состоявшихся подключений.
+ * <p>
+ * Пока подключений меньше {@code minSamples}, действует полный таймаут. Затем таймаут сужается
+ * до заданного перцентиля времени подключения, но не ниже {@code minMillis}: мертвые адреса
+ * перестают держать слот проверки полный таймаут, а живые укладываются в перцентиль.
+ */
+class AdaptiveTimeout {
+
+    private static final int BUCKET_MILLIS = 10;
+    private static final int RECALCULATE_EVERY = 32; // Перцентиль пересчитывается не на каждое подключение
+
+    private final LatencyHistogram connects;
+    private final int maxMillis;
+    private final int minMillis;
+    private final int minSamples;
+    private final double percentile;
+    private volatile int current;
+
+    /**
+     * @param maxMillis  - полный таймаут, он же верхняя граница
+     * @param minMillis  - нижняя граница таймаута
+     * @param minSamples - сколько подключений нужно увидеть до сужения таймаута
+     * @param percentile - перцентиль времени подключения, от 0 до 1
+     */
+    AdaptiveTimeout( int maxMillis, int minMillis, int minSamples, double percentile ) {
+        this.connects = new LatencyHistogram( maxMillis, BUCKET_MILLIS );
+        this.maxMillis = maxMillis;
+        this.minMillis = Math.min( minMillis, maxMillis );
+        this.minSamples = Math.max( minSamples, 1 );
+        this.percentile = percentile;
+        this.current = maxMillis;
+    }
+
+    // Таймаут без подстройки
+    static AdaptiveTimeout fixed( int millis ) {
+        return new AdaptiveTimeout( millis, millis, Integer.MAX_VALUE, 1 );
+    }
+
+    int millis() {
+        return current;
+    }
+
+    // Учитываются только подключения: неудачное рукопожатие тоже говорит о времени ответа сети
+    void record( ProbeResult result ) {
+        if( ! result.isConnected() || minSamples == Integer.MAX_VALUE ) {
+            return;
+        }
+        final long count = connects.record( result.connectMillis() );
+        if( count >= minSamples && count % RECALCULATE_EVERY == 0 ) {
+            current = (int) Math.max( minMillis, Math.min( maxMillis, connects.percentile( percentile ) ) );
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.proxychecker.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Досрочное завершение прохода по списку: как только найдено {@code limit} прокси
+ * быстрее порога задержки, новые адреса не проверяются, а результаты оставшихся проверок не публикуются.
+ */
+class EarlyCutoff {
+
+    private final int limit;
+    private final long maxLatencyMicros;
+    private final AtomicInteger found = new AtomicInteger();
+    private final CompletableFuture<Void> reached = new CompletableFuture<>();
+
+    /**
+     * @param limit         - сколько быстрых прокси нужно найти; {@code 0} — без ограничения
+     * @param latencyMillis - порог задержки быстрого прокси
+     */
+    EarlyCutoff( int limit, long latencyMillis ) {
+        this.limit = limit;
+        this.maxLatencyMicros = latencyMillis * 1000L;
+    }
+
+    boolean isEnabled() {
+        return limit > 0;
+    }
+
+    boolean isReached() {
+        return reached.isDone();
+    }
+
+    // Завершается, когда найдено достаточно быстрых прокси; без ограничения — никогда
+    CompletableFuture<Void> reached() {
+        return reached;
+    }
+
+    /**
+     * @param latencyMicros - время отклика найденного прокси
+     * @return {@code false}, если прокси найден уже после завершения и публиковать его не нужно
+     */
+    boolean accept( int latencyMicros ) {
+        if( ! isEnabled() ) {
+            return true;
+        }
+        if( isReached() ) {
+            return false;
+        }
+        if( latencyMicros < maxLatencyMicros && found.incrementAndGet() >= limit ) {
+            reached.complete( null );
+        }
+        return true;
+    }
+}
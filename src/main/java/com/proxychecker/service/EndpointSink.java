@@ -0,0 +1,14 @@
+package com.proxychecker.service;
+
+/**
+ * Получатель адресов прокси из источника, без промежуточных строк и объектов.
+ */
+@FunctionalInterface
+public interface EndpointSink {
+
+    /**
+     * @param address - IPv4-адрес, упакованный в {@code int}
+     * @param port    - порт 1..65535
+     */
+    void accept( int address, int port );
+}
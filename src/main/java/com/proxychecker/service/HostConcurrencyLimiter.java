@@ -0,0 +1,63 @@
+package com.proxychecker.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Глобальный ограничитель одновременных проверок на один хост (IPv4-адрес, упакованный в {@code int}).
+ * <p>
+ * Общий для всех запросов: несколько параллельных проверок одного и того же списка
+ * не открывают к одному хосту больше {@code permitsPerHost} соединений.
+ * Семафор хоста удаляется, как только с ним перестают работать.
+ */
+@Component
+public class HostConcurrencyLimiter {
+
+    private final int permitsPerHost;
+    private final ConcurrentHashMap<Integer, HostPermits> hosts = new ConcurrentHashMap<>();
+
+    public HostConcurrencyLimiter( @Value( "${proxy.checker.max-concurrent-per-host:4}" ) int permitsPerHost ) {
+        if( permitsPerHost <= 0 ) {
+            throw new IllegalArgumentException( "Permits per host must be positive: " + permitsPerHost );
+        }
+        this.permitsPerHost = permitsPerHost;
+    }
+
+    public void acquire( int host ) throws InterruptedException {
+        HostPermits permits = hosts.compute( host, ( key, value ) -> {
+            HostPermits current = value == null ? new HostPermits( permitsPerHost ) : value;
+            current.users++;
+            return current;
+        } );
+        try {
+            permits.semaphore.acquire();
+        } catch( InterruptedException e ) {
+            leave( host );
+            throw e;
+        }
+    }
+
+    public void release( int host ) {
+        HostPermits permits = hosts.get( host );
+        if( permits != null ) {
+            permits.semaphore.release();
+            leave( host );
+        }
+    }
+
+    private void leave( int host ) {
+        hosts.computeIfPresent( host, ( key, value ) -> -- value.users == 0 ? null : value );
+    }
+
+    private static final class HostPermits {
+        private final Semaphore semaphore;
+        private int users; // Изменяется только внутри compute
+
+        private HostPermits( int permits ) {
+            this.semaphore = new Semaphore( permits );
+        }
+    }
+}
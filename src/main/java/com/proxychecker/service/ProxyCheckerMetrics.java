@@ -0,0 +1,149 @@
+package com.proxychecker.service;
+
+import com.proxychecker.service.engine.NioConnectEngine;
+import com.proxychecker.service.engine.ProbeResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Метрики конвейера проверки по этапам: подключение, рукопожатие, определение страны и отбор результата.
+ * <p>
+ * Счетчики — {@code proxy.checker.stage} с тегами {@code stage} и {@code outcome}, задержки —
+ * {@code proxy.checker.stage.latency} с гистограммой перцентилей. Счетчики заводятся заранее,
+ * чтобы на каждую проверку не искать метр в реестре.
+ */
+@Component
+public class ProxyCheckerMetrics {
+
+    private static final String STAGE = "proxy.checker.stage";
+    private static final String STAGE_LATENCY = "proxy.checker.stage.latency";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger checksInFlight = new AtomicInteger();
+
+    private final Counter connectSuccess;
+    private final Counter connectFailure;
+    private final Counter handshakeSuccess;
+    private final Counter handshakeFailure;
+    private final Counter geoIpKnown;
+    private final Counter geoIpUnknown;
+    private final Counter filterServedFromStore;
+    private final Counter filterSkippedDead;
+    private final Counter filterDeferred;
+    private final Counter filterUnknownCountry;
+    private final Counter filterPublished;
+
+    private final Timer connectLatency;
+    private final Timer handshakeLatency;
+    private final Timer geoIpLatency;
+
+    public ProxyCheckerMetrics( MeterRegistry registry, NioConnectEngine connectEngine ) {
+        this.registry = registry;
+
+        connectSuccess = counter( "connect", "success" );
+        connectFailure = counter( "connect", "failure" );
+        handshakeSuccess = counter( "handshake", "success" );
+        handshakeFailure = counter( "handshake", "failure" );
+        geoIpKnown = counter( "geoip", "known" );
+        geoIpUnknown = counter( "geoip", "unknown" );
+        filterServedFromStore = counter( "filter", "served-from-store" );
+        filterSkippedDead = counter( "filter", "skipped-dead" );
+        filterDeferred = counter( "filter", "deferred-to-recheck" );
+        filterUnknownCountry = counter( "filter", "unknown-country" );
+        filterPublished = counter( "filter", "published" );
+
+        connectLatency = timer( "connect" );
+        handshakeLatency = timer( "handshake" );
+        geoIpLatency = timer( "geoip" );
+
+        Gauge.builder( "proxy.checker.checks.in-flight", checksInFlight, AtomicInteger::get )
+                .description( "Проверки, начатые и еще не завершенные" )
+                .register( registry );
+        Gauge.builder( "proxy.checker.engine.in-flight", connectEngine, NioConnectEngine::inFlight )
+                .description( "Соединения, открытые неблокирующим движком" )
+                .register( registry );
+        Gauge.builder( "proxy.checker.engine.queued", connectEngine, NioConnectEngine::queued )
+                .description( "Проверки, ожидающие свободного слота движка" )
+                .register( registry );
+    }
+
+    /**
+     * Оборачивает исполнитель метриками занятости пула и очереди задач
+     */
+    public ExecutorService monitor( ExecutorService executor, String name ) {
+        return ExecutorServiceMetrics.monitor( registry, executor, name );
+    }
+
+    public void checkStarted() {
+        checksInFlight.incrementAndGet();
+    }
+
+    public void checkFinished() {
+        checksInFlight.decrementAndGet();
+    }
+
+    // Итог подключения и рукопожатия одной проверки
+    public void probed( ProbeResult result ) {
+        if( ! result.isConnected() ) {
+            connectFailure.increment();
+            return;
+        }
+        connectSuccess.increment();
+        connectLatency.record( result.connectMillis(), TimeUnit.MILLISECONDS );
+        if( result.isSuccess() ) {
+            if( result.protocol() != null ) {
+                handshakeSuccess.increment();
+                handshakeLatency.record( result.elapsedMillis() - result.connectMillis(), TimeUnit.MILLISECONDS );
+            }
+        } else {
+            handshakeFailure.increment();
+        }
+    }
+
+    public void geoIpResolved( boolean known, long elapsedNanos ) {
+        ( known ? geoIpKnown : geoIpUnknown ).increment();
+        geoIpLatency.record( elapsedNanos, TimeUnit.NANOSECONDS );
+    }
+
+    public void servedFromStore() {
+        filterServedFromStore.increment();
+    }
+
+    public void skippedDead() {
+        filterSkippedDead.increment();
+    }
+
+    public void deferredToRecheck() {
+        filterDeferred.increment();
+    }
+
+    public void unknownCountry() {
+        filterUnknownCountry.increment();
+    }
+
+    public void published() {
+        filterPublished.increment();
+    }
+
+    private Counter counter( String stage, String outcome ) {
+        return Counter.builder( STAGE )
+                .tag( "stage", stage )
+                .tag( "outcome", outcome )
+                .register( registry );
+    }
+
+    private Timer timer( String stage ) {
+        return Timer.builder( STAGE_LATENCY )
+                .tag( "stage", stage )
+                .publishPercentileHistogram()
+                .register( registry );
+    }
+}
@@ -1,27 +1,42 @@
 package com.proxychecker.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.dto.SourceStatsDto;
+import com.proxychecker.service.cluster.ClusterCoordinator;
+import com.proxychecker.service.cluster.ClusterSweep;
+import com.proxychecker.service.engine.NioConnectEngine;
+import com.proxychecker.service.engine.ProbeResult;
+import com.proxychecker.service.engine.ProxyHandshake;
+import com.proxychecker.service.engine.ProxyProtocol;
+import com.proxychecker.service.geo.GeoIpService;
+import com.proxychecker.service.health.HealthRecord;
+import com.proxychecker.service.health.HealthStore;
+import com.proxychecker.service.pool.ProxyPool;
+import com.proxychecker.service.result.ProxyResultSet;
+import com.proxychecker.service.result.ResultSink;
+import com.proxychecker.service.source.SourceFetch;
+import com.proxychecker.service.source.SourceFetcher;
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.LongHashSet;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.net.InetSocketAddress;
+import java.io.IOException;
 import java.net.Socket;
-import java.net.SocketAddress;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.proxychecker.constants.AppConstants.*;
 
@@ -29,134 +44,613 @@ import static com.proxychecker.constants.AppConstants.*;
 public class ProxyCheckerService {
 
     private static final Logger logger = LoggerFactory.getLogger( ProxyCheckerService.class );
-    private static ExecutorService executor = Executors.newFixedThreadPool( THREAD_POOL ); // Ограничение потоков
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final HttpClient client = HttpClient.newHttpClient();
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture( null );
+    private final ExecutorService executor; // Ограничение потоков
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor(); // Доставка прокси потоковым подписчикам
+    private final NioConnectEngine connectEngine;
+    private final GeoIpService geoIpService;
+    private final HostConcurrencyLimiter hostLimiter;
+    private final HealthStore healthStore;
+    private final ProxyPool proxyPool;
+    private final ProxyCheckerMetrics metrics;
+    private final ClusterCoordinator cluster;
+    private final SourceFetcher sourceFetcher;
+    private final String checkMode;
+    private final int connectTimeout;
+    private final int maxConcurrentPerRequest;
+    private final boolean skipFresh;
+    private final boolean handshakeEnabled;
+    private final ProxyHandshake handshake;
+    private final int handshakeTimeout;
+    private final boolean adaptiveTimeout;
+    private final int adaptiveMinTimeout;
+    private final int adaptiveMinSamples;
+    private final double adaptivePercentile;
+    private final int cutoffLatency;
+    private final boolean subnetScheduling;
+    private final double subnetRate;
+    private final int subnetBurst;
+    private final SweepCache sweepCache;
+    private volatile List<SourceStatsDto> lastSourceStats = List.of();
+    private volatile ProxyResultSet lastResults = new ProxyResultSet();
+
+    public ProxyCheckerService( NioConnectEngine connectEngine,
+                                GeoIpService geoIpService,
+                                HostConcurrencyLimiter hostLimiter,
+                                HealthStore healthStore,
+                                ProxyPool proxyPool,
+                                ProxyCheckerMetrics metrics,
+                                ClusterCoordinator cluster,
+                                SourceFetcher sourceFetcher,
+                                @Value( "${proxy.checker.mode:" + CHECK_MODE_NIO + "}" ) String checkMode,
+                                @Value( "${proxy.checker.connect-timeout:3000}" ) int connectTimeout,
+                                @Value( "${proxy.checker.virtual.max-concurrent-per-request:10000}" ) int maxConcurrentPerRequest,
+                                @Value( "${proxy.checker.health.skip-fresh:true}" ) boolean skipFresh,
+                                @Value( "${proxy.checker.handshake.enabled:true}" ) boolean handshakeEnabled,
+                                @Value( "${proxy.checker.handshake.target:1.1.1.1:443}" ) String handshakeTarget,
+                                @Value( "${proxy.checker.handshake.timeout:3000}" ) int handshakeTimeout,
+                                @Value( "${proxy.checker.adaptive-timeout.enabled:false}" ) boolean adaptiveTimeout,
+                                @Value( "${proxy.checker.adaptive-timeout.min-millis:500}" ) int adaptiveMinTimeout,
+                                @Value( "${proxy.checker.adaptive-timeout.min-samples:100}" ) int adaptiveMinSamples,
+                                @Value( "${proxy.checker.adaptive-timeout.percentile:0.95}" ) double adaptivePercentile,
+                                @Value( "${proxy.checker.cutoff.latency-millis:" + FAST_RESPONSE_MILLIS + "}" ) int cutoffLatency,
+                                @Value( "${proxy.checker.subnet.enabled:true}" ) boolean subnetScheduling,
+                                @Value( "${proxy.checker.subnet.rate-per-second:50}" ) double subnetRate,
+                                @Value( "${proxy.checker.subnet.burst:16}" ) int subnetBurst,
+                                @Value( "${proxy.checker.sweep.cache-millis:30000}" ) long sweepCacheMillis ) {
+        this.connectEngine = connectEngine;
+        this.geoIpService = geoIpService;
+        this.hostLimiter = hostLimiter;
+        this.healthStore = healthStore;
+        this.proxyPool = proxyPool;
+        this.metrics = metrics;
+        this.cluster = cluster;
+        this.sourceFetcher = sourceFetcher;
+        this.executor = metrics.monitor( Executors.newFixedThreadPool( THREAD_POOL ), "proxy-checker" );
+        this.checkMode = checkMode.toLowerCase();
+        this.connectTimeout = connectTimeout;
+        this.maxConcurrentPerRequest = maxConcurrentPerRequest;
+        this.skipFresh = skipFresh;
+        this.handshakeEnabled = handshakeEnabled;
+        this.handshake = ProxyHandshake.forTarget( handshakeTarget );
+        this.handshakeTimeout = handshakeTimeout;
+        this.adaptiveTimeout = adaptiveTimeout;
+        this.adaptiveMinTimeout = adaptiveMinTimeout;
+        this.adaptiveMinSamples = adaptiveMinSamples;
+        this.adaptivePercentile = adaptivePercentile;
+        this.cutoffLatency = cutoffLatency;
+        this.subnetScheduling = subnetScheduling;
+        this.subnetRate = subnetRate;
+        this.subnetBurst = subnetBurst;
+        this.sweepCache = new SweepCache( sweepCacheMillis, System::nanoTime );
+    }
 
     public List<ProxyDto> checkProxies( String flag, String resource ) {
+        return checkProxies( flag, resource, 0 );
+    }
+
+    /**
+     * Проверка с досрочным завершением: как только найдено {@code fastLimit} прокси быстрее
+     * {@code proxy.checker.cutoff.latency-millis}, проверка заканчивается. В таком режиме
+     * таймаут подключения всегда подстраивается под задержки проверки.
+     *
+     * @param flag      - тип прокси
+     * @param resource  - ресурс
+     * @param fastLimit - сколько быстрых прокси нужно найти; {@code 0} — проверить весь список
+     */
+    public List<ProxyDto> checkProxies( String flag, String resource, int fastLimit ) {
         try {
-            List<String> proxies = getProxies( flag, resource );
-            return checkProxiesAsync( proxies );
+            final SweepCache.SharedSweep sweep = userSweep( flag, resource, fastLimit );
+            sweep.completion().join();
+            return sweep.results();
         } catch( Exception e ) {
-            logger.error( "Error during proxy checking process: {}", e.getMessage() );
-            throw new RuntimeException( "Error during proxy checking process: " + e.getMessage() );
+            final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.error( "Error during proxy checking process: {}", cause.getMessage() );
+            throw new RuntimeException( "Error during proxy checking process: " + cause.getMessage() );
+        }
+    }
+
+    /**
+     * Потоковая проверка прокси: каждый рабочий прокси публикуется сразу после проверки,
+     * не дожидаясь самых медленных таймаутов. Проверка запускается при подписке;
+     * подписчик на уже идущую или недавно завершенную проверку тех же списков получает ее результаты.
+     *
+     * @param flag     - тип прокси
+     * @param resource - ресурс
+     */
+    public Flow.Publisher<ProxyDto> streamProxies( String flag, String resource ) {
+        return streamProxies( flag, resource, 0 );
+    }
+
+    /**
+     * Потоковая проверка с досрочным завершением, см. {@link #checkProxies(String, String, int)}
+     *
+     * @param flag      - тип прокси
+     * @param resource  - ресурс
+     * @param fastLimit - сколько быстрых прокси нужно найти; {@code 0} — проверить весь список
+     */
+    public Flow.Publisher<ProxyDto> streamProxies( String flag, String resource, int fastLimit ) {
+        return new SweepPublisher( () -> userSweep( flag, resource, fastLimit ), streamExecutor, STREAM_SEND_TIMEOUT_MILLIS );
+    }
+
+    /**
+     * Пополнение пула проверкой всех источников. Найденные прокси попадают в пул и журнал состояний,
+     * но не заменяют {@link #getLastResults()}: там остается последняя проверка, запрошенная пользователем
+     */
+    public void refillPool() {
+        try {
+            sharedSweep( PROXY_TYPE_ALL, RESOURCE_ALL, 0 ).completion().join();
+        } catch( CompletionException e ) {
+            final Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException( "Error during proxy pool refill: " + cause.getMessage() );
         }
     }
 
-    private List<String> getProxies( String flag, String resource ) throws Exception {
-        isExecutorTerminated();
+    /**
+     * Перепроверка уже известных адресов без загрузки источников
+     *
+     * @param endpoints - адреса, упакованные {@link Endpoints#pack}
+     * @return число рабочих прокси
+     */
+    public int recheck( long[] endpoints ) throws InterruptedException {
+        final LongAdder working = new LongAdder();
+        checkProxiesAsync( endpoints( endpoints ), protocols( PROXY_TYPE_ALL ), 0, false,
+                ( address, port, proxyType, latencyMicros, country ) -> working.increment() );
+        return working.intValue();
+    }
+
+    /**
+     * Проверка пачки адресов на этом узле — от координатора кластера или вместо исполнителя, который не ответил.
+     * Результаты не попадают в {@link #getLastResults()}.
+     *
+     * @param endpoints - адреса, упакованные {@link Endpoints#pack}
+     * @param protocols - маска протоколов рукопожатия {@link ProxyProtocol}
+     * @return рабочие прокси пачки
+     */
+    public ProxyResultSet checkEndpoints( long[] endpoints, int protocols ) throws InterruptedException {
+        final ProxyResultSet results = new ProxyResultSet();
+        checkProxiesAsync( endpoints( endpoints ), handshakeEnabled ? protocols : ProxyProtocol.NONE, 0, false, results::add );
+        return results;
+    }
 
-        List<String> proxies = ProxyListDownloader.loadProxies( flag.toLowerCase(), resource );
+    /**
+     * Результаты последней проверки списков в колоночном виде; во время проверки набор пополняется
+     */
+    public ProxyResultSet getLastResults() {
+        return lastResults;
+    }
 
-        logger.info( "Loaded {} proxies for flag '{}'", proxies.size(), flag );
-        return proxies;
+    /**
+     * Статистика источников последней проверки: сколько адресов оказались уникальными, а сколько — повторами
+     */
+    public List<SourceStatsDto> getLastSourceStats() {
+        return lastSourceStats;
     }
 
-    private List<ProxyDto> checkProxiesAsync( List<String> proxies ) {
-        // Создаем список CompletableFuture для асинхронной проверки каждого прокси
-        List<CompletableFuture<ProxyDto>> futures = proxies.stream()
-                .map( proxy -> CompletableFuture.supplyAsync( () -> checkAndCreateProxyDto( proxy ), executor ) )
-                .toList();
+    // Проверка по запросу пользователя: ее набор сразу становится последним и пополняется по ходу проверки
+    private SweepCache.SharedSweep userSweep( String flag, String resource, int fastLimit ) {
+        final SweepCache.SharedSweep sweep = sharedSweep( flag, resource, fastLimit );
+        lastResults = sweep.resultSet();
+        return sweep;
+    }
 
-        // Ожидаем завершения всех асинхронных задач и собираем результаты
-        return futures.stream()
-                .map( CompletableFuture::join )
-                .filter( Objects::nonNull )
-                .collect( Collectors.toList() );
+    // Одинаковые проверки списков выполняются один раз: см. SweepCache
+    private SweepCache.SharedSweep sharedSweep( String flag, String resource, int fastLimit ) {
+        final String key = flag.toLowerCase() + '/' + resource.toLowerCase() + '/' + fastLimit;
+        return sweepCache.obtain( key, ( results, onWorking ) ->
+                checkProxiesAsync( sweep( flag, resource ), protocols( flag ), fastLimit, true, onWorking ) );
     }
 
-    private ProxyDto checkAndCreateProxyDto( String proxy ) {
-        String[] proxyParts = proxy.split( ":" );
-        if( proxyParts.length != 2 ) {
-            logger.warn( "Invalid proxy format: {}", proxy );
-            return null; // Неправильный формат прокси
+    // Параллельно читает все источники: каждый новый адрес уходит на проверку, пока списки еще скачиваются,
+    // адреса из прошлого снимка источника — в onUnchanged после новых;
+    // повторы внутри источника и между источниками отсекаются до открытия сокета
+    private void loadProxies( String flag, String resource, EndpointSink sink, EndpointSink onUnchanged ) throws InterruptedException {
+        final List<String> urls = ProxyListDownloader.determineProxyUrls( flag.toLowerCase(), resource );
+        final LongHashSet seen = new LongHashSet( 1 << 16 );
+
+        final List<Future<SourceStatsDto>> results = new ArrayList<>( urls.size() );
+        try( ExecutorService sourceExecutor = Executors.newVirtualThreadPerTaskExecutor() ) {
+            for( String url : urls ) {
+                results.add( sourceExecutor.submit( () -> loadSource( url, seen, sink, onUnchanged ) ) );
+            }
         }
 
-        final String host = proxyParts[0];
-        final int port;
-        try {
-            port = Integer.parseInt( proxyParts[1] );
-        } catch( NumberFormatException e ) {
-            logger.warn( "Invalid port in proxy {}: {}", proxy, proxyParts[1] );
-            return null; // Неправильный формат порта
+        final List<SourceStatsDto> stats = new ArrayList<>( urls.size() );
+        RuntimeException failure = null;
+        for( int i = 0; i < urls.size(); i++ ) {
+            try {
+                stats.add( results.get( i ).get() );
+            } catch( ExecutionException e ) {
+                logger.error( "Error while loading proxies from {}: {}", urls.get( i ), e.getCause().toString() );
+                stats.add( new SourceStatsDto().setSource( urls.get( i ) ).setFailed( true ) );
+                failure = new RuntimeException( e.getCause() );
+            }
         }
+        lastSourceStats = List.copyOf( stats );
 
-        // Проверка доступности прокси
-        final long responseTime = checkProxy( proxy );
-        if( responseTime == HTTP_PROXY_ERROR ) {
-            return null; // Прокси не работает, пропускаем
+        // Проверка бессмысленна, только если не загрузился ни один источник
+        if( failure != null && stats.stream().allMatch( SourceStatsDto::isFailed ) ) {
+            throw failure;
         }
+        logger.info( "Loaded {} unique proxies for flag '{}' from {} sources", seen.size(), flag, urls.size() );
+    }
 
-        // Получаем страну по IP
-        final String country = getCountryByIp( host );
-        if( "Unknown".equalsIgnoreCase( country ) ) {
-            return null; // Если страна не определена, пропускаем этот прокси
+    // Источник проверки: уже известные адреса
+    private static ProxySource endpoints( long[] endpoints ) {
+        return ( sink, onKnown ) -> {
+            for( long endpoint : endpoints ) {
+                sink.accept( Endpoints.address( endpoint ), Endpoints.port( endpoint ) );
+            }
+        };
+    }
+
+    // Источник проверки: загрузка списков с отсевом адресов, которые проверялись недавно
+    private ProxySource sweep( String flag, String resource ) {
+        return ( sink, onKnown ) -> {
+            if( skipFresh ) {
+                loadProxies( flag, resource, skipFresh( sink, onKnown ), deferKnown( sink, onKnown ) );
+            } else {
+                loadProxies( flag, resource, sink, sink );
+            }
+        };
+    }
+
+    // Недавно проверенные адреса не проверяются снова: живые отдаются из хранилища, мертвые пропускаются до конца паузы
+    private EndpointSink skipFresh( EndpointSink sink, ResultSink onWorking ) {
+        return ( address, port ) -> {
+            final HealthRecord health = healthStore.get( address, port );
+            if( health == null || healthStore.isDue( health ) ) {
+                sink.accept( address, port );
+            } else {
+                serveFromStore( address, port, health, onWorking );
+            }
+        };
+    }
+
+    // Адреса, которые источник отдавал и в прошлый раз: известные хранилищу не проверяются в самой проверке,
+    // их в свой срок перепроверяет RecheckScheduler; проверяются только адреса, которых хранилище не знает
+    private EndpointSink deferKnown( EndpointSink sink, ResultSink onWorking ) {
+        return ( address, port ) -> {
+            final HealthRecord health = healthStore.get( address, port );
+            if( health == null ) {
+                sink.accept( address, port );
+                return;
+            }
+            if( healthStore.isDue( health ) ) {
+                metrics.deferredToRecheck();
+            }
+            serveFromStore( address, port, health, onWorking );
+        };
+    }
+
+    // Живой прокси с известной страной отдается по последней проверке, мертвый пропускается
+    private void serveFromStore( int address, int port, HealthRecord health, ResultSink onWorking ) {
+        if( health.isAlive() && health.country() != null ) {
+            metrics.servedFromStore();
+            final String proxyType = proxyType( health.protocol(), port );
+            proxyPool.offer( Endpoints.pack( address, port ), (int) health.latencyMillis(), proxyType, health.country() );
+            onWorking.accept( address, port, proxyType, micros( health.latencyMillis() ), health.country() );
+        } else {
+            metrics.skippedDead();
         }
+    }
 
-        // Определяем тип прокси
-        final String proxyType = getProxyType( proxy );
+    private SourceStatsDto loadSource( String url, LongHashSet seen, EndpointSink sink, EndpointSink onUnchanged ) throws InterruptedException {
+        final int[] counts = new int[2]; // Уникальные и повторы; sink источника вызывается из одного потока
+        final SourceFetch fetch = sourceFetcher.fetch( url, unique( seen, counts, sink ), unique( seen, counts, onUnchanged ) );
 
-        // Преобразуем время отклика в секунды и округляем до 3 знаков
-        final BigDecimal responseTimeInSeconds = BigDecimal.valueOf( responseTime / 1000.0 )
-                .setScale( 3, RoundingMode.HALF_UP );
+        logger.info( "Source {} ({}): {} unique, {} duplicate, {} skipped lines, {} added, {} removed", url, fetch.status(),
+                counts[0], counts[1], fetch.parser().skipped(), fetch.added(), fetch.removed() );
+        return new SourceStatsDto()
+                .setSource( url )
+                .setStatus( fetch.status().name() )
+                .setUnique( counts[0] )
+                .setDuplicate( counts[1] )
+                .setSkipped( fetch.parser().skipped() )
+                .setAdded( fetch.added() )
+                .setRemoved( fetch.removed() );
+    }
 
-        // Логирование успешной проверки
-        logger.info( "Proxy {} is working. Type: {}, Response Time: {}s, Country: {}", proxy, proxyType, responseTimeInSeconds, country );
-        return new ProxyDto()
-                .setHost( host )
-                .setPort( port )
-                .setProxyType( proxyType )
-                .setResponseTime( responseTimeInSeconds )
-                .setCountry( country );
+    private static EndpointSink unique( LongHashSet seen, int[] counts, EndpointSink sink ) {
+        return ( address, port ) -> {
+            if( seen.add( Endpoints.pack( address, port ) ) ) {
+                counts[0]++;
+                sink.accept( address, port );
+            } else {
+                counts[1]++;
+            }
+        };
     }
 
-    private long checkProxy( String proxy ) {
-        final long startTime = System.currentTimeMillis();
+    // Проверяет адреса источника и отдает каждый рабочий прокси в onWorking по мере готовности; возвращается по окончании проверки.
+    // Проверки списков (distributed) делятся между исполнителями кластера, если узел — координатор
+    private void checkProxiesAsync( ProxySource source, int protocols, int fastLimit, boolean distributed,
+                                    ResultSink onWorking ) throws InterruptedException {
+        final long startTime = System.nanoTime();
+        final LongAdder working = new LongAdder();
+        final EarlyCutoff cutoff = new EarlyCutoff( fastLimit, cutoffLatency );
+        final AdaptiveTimeout timeout = adaptiveTimeout || cutoff.isEnabled()
+                ? new AdaptiveTimeout( connectTimeout, adaptiveMinTimeout, adaptiveMinSamples, adaptivePercentile )
+                : AdaptiveTimeout.fixed( connectTimeout );
         try {
-            final String[] parts = proxy.split( ":" );
-            Socket socket = new Socket();
-            SocketAddress socketAddress = new InetSocketAddress( parts[0], Integer.parseInt( parts[1] ) );
-            socket.connect( socketAddress, 3000 );
-            socket.close();
+            checkSource( source, protocols, timeout, cutoff, distributed && cluster.isCoordinator(),
+                    ( address, port, proxyType, latencyMicros, country ) -> {
+                        if( cutoff.accept( latencyMicros ) ) {
+                            working.increment();
+                            onWorking.accept( address, port, proxyType, latencyMicros, country );
+                        }
+                    } );
+        } finally {
+            healthStore.flush();
+        }
+        // Одна строка на проверку списка вместо строки на каждый прокси
+        logger.info( "Sweep finished in {} ms: {} working proxies, connect timeout {} ms{}",
+                TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startTime ), working.sum(), timeout.millis(),
+                cutoff.isReached() ? ", stopped early" : "" );
+    }
 
-            return System.currentTimeMillis() - startTime;
-        } catch( Exception e ) {
-            logger.error( "Error while checking proxy {}: {}", proxy, e.toString() );
-            return HTTP_PROXY_ERROR;
+    private void checkSource( ProxySource source, int protocols, AdaptiveTimeout timeout, EarlyCutoff cutoff,
+                              boolean distributed, ResultSink onWorking ) throws InterruptedException {
+        // После досрочного завершения источник дочитывается, но новые адреса не проверяются
+        final ProxySource filtered = ( sink, onKnown ) -> source.load( ( address, port ) -> {
+            if( ! cutoff.isReached() ) {
+                sink.accept( address, port );
+            }
+        }, onKnown );
+        if( distributed ) {
+            // Адреса подсети уходят одному исполнителю, темп подключений к подсети ограничивает он
+            final ClusterSweep clusterSweep = cluster.start( protocols, onWorking, this::checkEndpoints,
+                    ( chunk, working ) -> recordChunk( chunk, working, protocols ) );
+            filtered.load( clusterSweep, onWorking );
+            clusterSweep.finish( cutoff.reached() );
+            return;
+        }
+        final ProxySource limited = subnetScheduling ? schedule( filtered, cutoff ) : filtered;
+
+        switch( checkMode ) {
+            case CHECK_MODE_NIO -> {
+                final SweepTracker tracker = new SweepTracker();
+                limited.load( ( address, port ) -> {
+                    tracker.begin();
+                    metrics.checkStarted();
+                    checkNio( address, port, protocols, timeout, onWorking ).whenComplete( ( ignored, e ) -> {
+                        metrics.checkFinished();
+                        tracker.end();
+                    } );
+                }, onWorking );
+                tracker.await( cutoff.reached() );
+            }
+            case CHECK_MODE_POOL -> {
+                final SweepTracker tracker = new SweepTracker();
+                limited.load( ( address, port ) -> {
+                    tracker.begin();
+                    metrics.checkStarted();
+                    executor.execute( () -> {
+                        try {
+                            check( address, port, protocols, timeout, onWorking );
+                        } finally {
+                            metrics.checkFinished();
+                            tracker.end();
+                        }
+                    } );
+                }, onWorking );
+                tracker.await( cutoff.reached() );
+            }
+            case CHECK_MODE_VIRTUAL -> checkProxiesVirtual( limited, protocols, timeout, onWorking );
+            default -> throw new IllegalStateException( "Unsupported check mode: " + checkMode );
         }
     }
 
-    private String getCountryByIp( String ip ) {
+    // Адреса источника идут через планировщик подсетей: источник пишет в очереди подсетей,
+    // отдельный поток отдает адреса на проверку по кругу в темпе токенов; load возвращается, когда очередь разобрана
+    private ProxySource schedule( ProxySource source, EarlyCutoff cutoff ) {
+        return ( sink, onKnown ) -> {
+            final SubnetScheduler scheduler = new SubnetScheduler( subnetRate, subnetBurst, System::nanoTime );
+            final Thread dispatcher = Thread.ofVirtual().name( "subnet-scheduler" ).start( () -> {
+                try {
+                    scheduler.drainTo( sink, cutoff::isReached );
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            } );
+            try {
+                source.load( scheduler::offer, onKnown );
+            } finally {
+                scheduler.close();
+                dispatcher.join();
+            }
+        };
+    }
+
+    // Каждая проверка — в своем виртуальном потоке; семафор запроса не дает одной проверке занять все ресурсы
+    private void checkProxiesVirtual( ProxySource source, int protocols, AdaptiveTimeout timeout,
+                                      ResultSink onWorking ) throws InterruptedException {
+        try( VirtualSweep virtualSweep = new VirtualSweep( maxConcurrentPerRequest, ( address, port ) -> {
+            metrics.checkStarted();
+            try {
+                check( address, port, protocols, timeout, onWorking );
+            } finally {
+                metrics.checkFinished();
+            }
+        } ) ) {
+            source.load( virtualSweep, onWorking );
+        }
+    }
+
+    // Протоколы для проверки по типу из запроса; без рукопожатий — только подключение
+    private int protocols( String flag ) {
+        return handshakeEnabled ? ProxyProtocol.forType( flag ) : ProxyProtocol.NONE;
+    }
+
+    // Если протокол адреса уже подтверждался и входит в набор, проверяется только он
+    private int candidates( int address, int port, int protocols ) {
+        if( Integer.bitCount( protocols ) < 2 ) {
+            return protocols;
+        }
+        final HealthRecord health = healthStore.get( address, port );
+        return health != null && health.protocol() != null && ( protocols & health.protocol().mask() ) != 0
+                ? health.protocol().mask()
+                : protocols;
+    }
+
+    // Проверка через неблокирующий движок: подключение и рукопожатие в потоке селектора, запись результата — в пуле:
+    // журнал состояний пишет на диск под общей блокировкой, и поток селектора не должен его ждать;
+    // завершается, когда результат отдан в onWorking
+    private CompletableFuture<?> checkNio( int address, int port, int protocols, AdaptiveTimeout timeout, ResultSink onWorking ) {
+        return connectEngine.probe( Endpoints.toSocketAddress( address, port ), candidates( address, port, protocols ), timeout.millis() )
+                .thenComposeAsync( result -> {
+                    metrics.probed( result );
+                    timeout.record( result );
+                    if( ! result.isSuccess() ) {
+                        recordFailure( address, port );
+                        return DONE;
+                    }
+                    final long geoIpStart = System.nanoTime();
+                    return geoIpService.getCountry( address ).thenAcceptAsync( country -> {
+                        metrics.geoIpResolved( ! COUNTRY_UNKNOWN.equalsIgnoreCase( country ), System.nanoTime() - geoIpStart );
+                        publishWorking( address, port, result, country, onWorking );
+                    }, executor );
+                }, executor );
+    }
+
+    private void check( int address, int port, int protocols, AdaptiveTimeout timeout, ResultSink onWorking ) {
+        // Проверка доступности прокси с учетом глобального лимита на хост
+        try {
+            hostLimiter.acquire( address );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        final ProbeResult result;
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri( URI.create( GEOJS_API_URL + "v1/ip/country/" + ip + ".json" ) )
-                    .build();
+            result = checkProxy( address, port, candidates( address, port, protocols ), timeout.millis() );
+        } finally {
+            hostLimiter.release( address );
+        }
+        metrics.probed( result );
+        timeout.record( result );
+        if( ! result.isSuccess() ) {
+            recordFailure( address, port ); // Прокси не работает, пропускаем
+            return;
+        }
 
-            HttpResponse<String> response = client.send( request, HttpResponse.BodyHandlers.ofString() );
-            JsonNode jsonNode = objectMapper.readTree( response.body() );
+        final long geoIpStart = System.nanoTime();
+        final String country = geoIpService.getCountry( address ).join();
+        metrics.geoIpResolved( ! COUNTRY_UNKNOWN.equalsIgnoreCase( country ), System.nanoTime() - geoIpStart );
+        publishWorking( address, port, result, country, onWorking );
+    }
 
-            return jsonNode.path( "country" ).asText( "Unknown" );
-        } catch( Exception e ) {
-            logger.error( "Error while getting country for IP {}: {}", ip, e.getMessage() );
-            return "Unknown";
+    // Результаты исполнителя кластера записываются в журнал и пул координатора, как если бы пачка проверялась здесь:
+    // иначе пул координатора пуст, а недавно проверенные адреса не пропускаются. Без рукопожатий тип определен по порту
+    private void recordChunk( long[] chunk, ProxyResultSet working, int protocols ) {
+        final LongHashSet alive = new LongHashSet( Math.max( working.size(), 16 ) );
+        working.forEach( ( address, port, proxyType, latencyMicros, country ) -> {
+            final long endpoint = Endpoints.pack( address, port );
+            alive.add( endpoint );
+            final ProxyProtocol verified = protocols == ProxyProtocol.NONE ? null : ProxyProtocol.fromType( proxyType );
+            healthStore.recordSuccess( address, port, latencyMicros / 1000, country, verified );
+            proxyPool.offer( endpoint, latencyMicros / 1000, proxyType, country );
+        } );
+        for( long endpoint : chunk ) {
+            if( ! alive.contains( endpoint ) ) {
+                recordFailure( Endpoints.address( endpoint ), Endpoints.port( endpoint ) );
+            }
+        }
+    }
+
+    private void recordFailure( int address, int port ) {
+        healthStore.recordFailure( address, port );
+        proxyPool.evict( Endpoints.pack( address, port ) );
+    }
+
+    // Рабочий прокси уходит дальше полями: ProxyDto, строка адреса и BigDecimal создаются только на границе API
+    private void publishWorking( int address, int port, ProbeResult result, String country, ResultSink onWorking ) {
+        healthStore.recordSuccess( address, port, result.elapsedMillis(), country, result.protocol() );
+        if( COUNTRY_UNKNOWN.equalsIgnoreCase( country ) ) {
+            metrics.unknownCountry();
+            proxyPool.evict( Endpoints.pack( address, port ) );
+            return; // Если страна не определена, пропускаем этот прокси
+        }
+
+        final String proxyType = proxyType( result.protocol(), port );
+        proxyPool.offer( Endpoints.pack( address, port ), (int) result.elapsedMillis(), proxyType, country );
+        metrics.published();
+
+        // Строка на каждый прокси — только в debug: на больших списках сам вывод тормозит проверку
+        if( logger.isDebugEnabled() ) {
+            logger.debug( "Proxy {} is working. Type: {}, Response Time: {} ms, Country: {}",
+                    Endpoints.toString( address, port ), proxyType, result.elapsedMillis(), country );
         }
+        onWorking.accept( address, port, proxyType, micros( result.elapsedMillis() ), country );
+    }
+
+    // Тип прокси — по рукопожатию, а если оно не выполнялось — по порту
+    private static String proxyType( ProxyProtocol protocol, int port ) {
+        return protocol != null ? protocol.type() : getProxyType( port );
+    }
+
+    private static int micros( long millis ) {
+        return (int) Math.min( millis * 1000, Integer.MAX_VALUE );
+    }
+
+    // Блокирующая проверка: подключение и рукопожатие; каждый следующий протокол — на новом соединении
+    private ProbeResult checkProxy( int address, int port, int protocols, int connectTimeout ) {
+        int remaining = protocols;
+        long connectMillis = HTTP_PROXY_ERROR;
+        ProxyProtocol protocol;
+        do {
+            protocol = ProxyProtocol.first( remaining );
+            final long startTime = System.currentTimeMillis();
+            try( Socket socket = new Socket() ) {
+                try {
+                    socket.connect( Endpoints.toSocketAddress( address, port ), connectTimeout );
+                } catch( IOException e ) {
+                    if( logger.isDebugEnabled() ) {
+                        logger.debug( "Error while checking proxy {}: {}", Endpoints.toString( address, port ), e.toString() );
+                    }
+                    return ProbeResult.FAILED;
+                }
+                connectMillis = System.currentTimeMillis() - startTime;
+                if( protocol == null || verify( socket, protocol ) ) {
+                    return new ProbeResult( System.currentTimeMillis() - startTime, connectMillis, protocol );
+                }
+            } catch( IOException ignored ) {
+                // Ошибка закрытия сокета не влияет на результат
+            }
+        } while( protocol != null && ( remaining &= ~protocol.mask() ) != ProxyProtocol.NONE );
+        return ProbeResult.handshakeFailed( connectMillis );
     }
 
-    private String getProxyType( String proxy ) {
-        final String port = proxy.split( ":" )[1];
+    private boolean verify( Socket socket, ProxyProtocol protocol ) {
+        try {
+            socket.setSoTimeout( handshakeTimeout );
+            return handshake.exchange( protocol, socket.getInputStream(), socket.getOutputStream(), new byte[ProxyHandshake.BUFFER_SIZE] );
+        } catch( IOException e ) {
+            logger.debug( "Proxy {} is not {}: {}", socket.getRemoteSocketAddress(), protocol, e.toString() );
+            return false;
+        }
+    }
 
+    // Видимость пакета — для бенчмарков
+    static String getProxyType( int port ) {
         return switch( port ) {
-            case "1080", "1081" -> PROTOCOL_SOCKS; // Порты 1080 и 1081 — для SOCKS-прокси
-            case "80" -> PROTOCOL_HTTP;            // Порт 80 — это стандарт для HTTP
-            case "443" -> PROTOCOL_HTTPS;          // Порт 443 — это стандарт для HTTPS
-            default -> PROTOCOL_HTTP;              // Для всех остальных портов предполагает HTTP
+            case 1080, 1081 -> PROTOCOL_SOCKS; // Порты 1080 и 1081 — для SOCKS-прокси
+            case 80 -> PROTOCOL_HTTP;          // Порт 80 — это стандарт для HTTP
+            case 443 -> PROTOCOL_HTTPS;        // Порт 443 — это стандарт для HTTPS
+            default -> PROTOCOL_HTTP;          // Для всех остальных портов предполагает HTTP
         };
     }
 
-    // Проверка завершения старого пула потоков
-    private void isExecutorTerminated() {
-        if( executor.isTerminated() ) {
-            executor = Executors.newFixedThreadPool( THREAD_POOL );
-        }
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        streamExecutor.shutdownNow();
+    }
+
+    // Откуда берутся адреса для проверки; прокси, известные без проверки, отдаются сразу в onKnown
+    @FunctionalInterface
+    private interface ProxySource {
+
+        void load( EndpointSink sink, ResultSink onKnown ) throws InterruptedException;
     }
 }
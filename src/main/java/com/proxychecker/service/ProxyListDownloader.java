@@ -1,10 +1,10 @@
 package com.proxychecker.service;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -13,28 +13,32 @@ import static com.proxychecker.constants.AppConstants.*;
 
 public class ProxyListDownloader {
 
-    // Получает ip адреса серверов с сервера
-    public static List<String> loadProxies( String proxyType, String resource ) throws InterruptedException {
-        return getProxies( determineProxyUrl( proxyType, resource ) );
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    // Разбирает поток байтов с адресами прокси
+    public static ProxyListParser parseStream( InputStream input, EndpointSink sink ) throws IOException {
+        ProxyListParser parser = new ProxyListParser( sink );
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while( ( read = input.read( buffer ) ) != -1 ) {
+            parser.feed( buffer, 0, read );
+        }
+        parser.finish();
+        return parser;
     }
 
-    // Получает ip адреса прокси из источника
-    private static List<String> getProxies( String serverUrl ) throws InterruptedException {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri( URI.create( serverUrl ) )
-                    .build();
-
-            HttpResponse<String> response = HttpClient.newHttpClient()
-                    .send( request, HttpResponse.BodyHandlers.ofString() );
-            return parseProxies( response.body() );
-        } catch( IOException e ) {
-            throw new RuntimeException( e );
+    // Читает локальный список прокси через отображение файла в память
+    public static ProxyListParser streamFile( Path file, EndpointSink sink ) throws IOException {
+        ProxyListParser parser = new ProxyListParser( sink );
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            parser.feed( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
         }
+        parser.finish();
+        return parser;
     }
 
-    // Парсит ответ от источника с ip адресами
-    private static List<String> parseProxies( String responseBody ) {
+    // Парсит ответ от источника с ip адресами построчно через строки; прежний способ, оставлен для сравнения в бенчмарках
+    static List<String> parseProxies( String responseBody ) {
         // Разделяет по новой строке, обрабатывает и возвращает список
         return Arrays.stream( responseBody.split( "\n" ) ) // Преобразует в поток
                 .map( String::trim ) // Убирает лишние пробелы
@@ -42,6 +46,23 @@ public class ProxyListDownloader {
                 .collect( Collectors.toList() ); // Собирает результат в список
     }
 
+    /**
+     * Адреса источников для типа прокси и ресурса; {@code all} в любом из параметров
+     * раскрывается во все типы или во все ресурсы
+     */
+    public static List<String> determineProxyUrls( String proxyType, String resource ) {
+        List<String> types = PROXY_TYPE_ALL.equalsIgnoreCase( proxyType )
+                ? List.of( "http", "socks4", "socks5" )
+                : List.of( proxyType );
+        List<String> resources = RESOURCE_ALL.equalsIgnoreCase( resource )
+                ? List.of( RESOURCE_GITHUB, RESOURCE_PROXY_LIST )
+                : List.of( resource );
+
+        return resources.stream()
+                .flatMap( source -> types.stream().map( type -> determineProxyUrl( type, source ) ) )
+                .toList();
+    }
+
     private static String determineProxyUrl( String proxyType, String resource ) {
         return switch( resource.toLowerCase() ) {
             case "github" -> switch( proxyType.toLowerCase() ) {
@@ -0,0 +1,116 @@
+package com.proxychecker.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Потоковый разбор списка {@code host:port} прямо из байтов.
+ * <p>
+ * Данные можно подавать кусками произвольной длины — строка, разрезанная между кусками,
+ * собирается по состоянию автомата. Каждый корректный адрес сразу уходит в {@link EndpointSink},
+ * без создания строк. Строки с именами хостов, IPv6 и прочим мусором пропускаются.
+ */
+public class ProxyListParser {
+
+    private final EndpointSink sink;
+
+    // Состояние текущей строки
+    private int address;
+    private int octets;
+    private int value;
+    private int digits;
+    private boolean inPort;
+    private boolean started;
+    private boolean trailing; // Адрес закончился, дальше допустимы только пробелы
+    private boolean invalid;
+
+    private int parsed;
+    private int skipped;
+
+    public ProxyListParser( EndpointSink sink ) {
+        this.sink = sink;
+    }
+
+    // Разбирает байты от position до limit, не меняя позицию буфера
+    public void feed( ByteBuffer buffer ) {
+        for( int i = buffer.position(), limit = buffer.limit(); i < limit; i++ ) {
+            accept( buffer.get( i ) );
+        }
+    }
+
+    public void feed( byte[] bytes, int offset, int length ) {
+        for( int i = offset, end = offset + length; i < end; i++ ) {
+            accept( bytes[i] );
+        }
+    }
+
+    // Завершает последнюю строку, если после нее не было перевода строки
+    public void finish() {
+        endLine();
+    }
+
+    public int parsed() {
+        return parsed;
+    }
+
+    public int skipped() {
+        return skipped;
+    }
+
+    private void accept( byte b ) {
+        if( b == '\n' ) {
+            endLine();
+            return;
+        }
+        if( invalid ) {
+            return;
+        }
+        if( b == ' ' || b == '\t' || b == '\r' ) {
+            trailing = started;
+            return;
+        }
+        if( trailing ) {
+            invalid = true;
+            return;
+        }
+        started = true;
+
+        if( b >= '0' && b <= '9' ) {
+            value = value * 10 + ( b - '0' );
+            digits++;
+            if( inPort ? ( digits > 5 || value > 0xFFFF ) : ( digits > 3 || value > 255 ) ) {
+                invalid = true;
+            }
+        } else if( b == '.' && ! inPort && digits > 0 && octets < 3 ) {
+            address = ( address << 8 ) | value;
+            octets++;
+            value = 0;
+            digits = 0;
+        } else if( b == ':' && ! inPort && digits > 0 && octets == 3 ) {
+            address = ( address << 8 ) | value;
+            inPort = true;
+            value = 0;
+            digits = 0;
+        } else {
+            invalid = true;
+        }
+    }
+
+    private void endLine() {
+        if( started ) {
+            if( ! invalid && inPort && digits > 0 && value > 0 ) {
+                parsed++;
+                sink.accept( address, value );
+            } else {
+                skipped++;
+            }
+        }
+        address = 0;
+        octets = 0;
+        value = 0;
+        digits = 0;
+        inPort = false;
+        started = false;
+        trailing = false;
+        invalid = false;
+    }
+}
@@ -0,0 +1,194 @@
+package com.proxychecker.service;
+
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.LongIntHashMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Планировщик проверок одного прохода по списку с ограничением темпа на подсеть /24.
+ * <p>
+ * Адреса раскладываются по очередям своих подсетей, у каждой подсети — свое ведро токенов
+ * ({@code ratePerSecond} с запасом {@code burst}). Очереди обходятся по кругу: за один шаг подсеть
+ * отдает не больше одного адреса, а подсеть без токенов пропускается. Так список, в котором
+ * тысячи адресов одного хостинга, не превращается в залп подключений к одной сети,
+ * а общий темп по всем подсетям остается высоким.
+ * <p>
+ * Ядро — {@link #offer} и {@link #poll(long)} — работает с переданным временем и проверяется
+ * без потоков и часов; {@link #drainTo} отдает адреса в темпе реального времени.
+ */
+class SubnetScheduler {
+
+    static final long NONE = -1L; // Упакованный адрес всегда неотрицателен
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final LongSupplier clock;
+    private final LongIntHashMap shardIndex = new LongIntHashMap( 1024, -1 );
+    private final List<Shard> shards = new ArrayList<>();
+    private final ArrayDeque<Shard> active = new ArrayDeque<>(); // Подсети с адресами в очереди, в порядке обхода
+    private int pending;
+    private boolean closed;
+
+    /**
+     * @param ratePerSecond - сколько подключений в секунду можно начать к одной подсети
+     * @param burst         - сколько подключений подсеть может получить сразу, без пауз
+     * @param clock         - источник времени в наносекундах
+     */
+    SubnetScheduler( double ratePerSecond, int burst, LongSupplier clock ) {
+        if( ratePerSecond <= 0 || burst <= 0 ) {
+            throw new IllegalArgumentException( "Subnet rate and burst must be positive: " + ratePerSecond + ", " + burst );
+        }
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.burst = burst;
+        this.clock = clock;
+    }
+
+    synchronized void offer( int address, int port ) {
+        final long subnet = Integer.toUnsignedLong( address ) >>> 8;
+        int index = shardIndex.get( subnet );
+        if( index < 0 ) {
+            index = shards.size();
+            shards.add( new Shard( burst, clock.getAsLong() ) );
+            shardIndex.put( subnet, index );
+        }
+        final Shard shard = shards.get( index );
+        if( shard.isEmpty() ) {
+            active.addLast( shard );
+        }
+        shard.add( Endpoints.pack( address, port ) );
+        pending++;
+        notifyAll();
+    }
+
+    /**
+     * Следующий адрес по кругу среди подсетей, у которых есть токен
+     *
+     * @return упакованный адрес или {@link #NONE}, если сейчас отдать нечего
+     */
+    synchronized long poll( long now ) {
+        for( int i = active.size(); i > 0; i-- ) {
+            final Shard shard = active.pollFirst();
+            shard.refill( now, tokensPerNano, burst );
+            if( shard.tokens < 1 ) {
+                active.addLast( shard );
+                continue;
+            }
+            shard.tokens--;
+            final long endpoint = shard.remove();
+            if( ! shard.isEmpty() ) {
+                active.addLast( shard );
+            }
+            pending--;
+            return endpoint;
+        }
+        return NONE;
+    }
+
+    /**
+     * @return через сколько наносекунд у какой-нибудь подсети появится токен; {@link Long#MAX_VALUE} — очередь пуста
+     */
+    synchronized long nanosUntilReady( long now ) {
+        long wait = Long.MAX_VALUE;
+        for( Shard shard : active ) {
+            shard.refill( now, tokensPerNano, burst );
+            wait = Math.min( wait, shard.tokens >= 1 ? 0 : (long) Math.ceil( ( 1 - shard.tokens ) / tokensPerNano ) );
+        }
+        return wait;
+    }
+
+    synchronized int pending() {
+        return pending;
+    }
+
+    // Новых адресов не будет: drainTo вернется, когда очередь опустеет
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Отдает адреса в sink в темпе токенов, пока очередь не будет закрыта и опустошена.
+     * Если {@code stopped} стал истинным, оставшиеся адреса отбрасываются.
+     */
+    void drainTo( EndpointSink sink, BooleanSupplier stopped ) throws InterruptedException {
+        while( true ) {
+            final long endpoint;
+            synchronized( this ) {
+                while( true ) {
+                    if( stopped.getAsBoolean() ) {
+                        return;
+                    }
+                    final long now = clock.getAsLong();
+                    final long polled = poll( now );
+                    if( polled != NONE ) {
+                        endpoint = polled;
+                        break;
+                    }
+                    if( pending == 0 ) {
+                        if( closed ) {
+                            return;
+                        }
+                        wait();
+                    } else {
+                        TimeUnit.NANOSECONDS.timedWait( this, Math.max( nanosUntilReady( now ), 1 ) );
+                    }
+                }
+            }
+            // Проверка запускается вне блокировки, чтобы источники могли дописывать очередь
+            sink.accept( Endpoints.address( endpoint ), Endpoints.port( endpoint ) );
+        }
+    }
+
+    // Очередь адресов подсети на кольцевом буфере и ее ведро токенов
+    private static final class Shard {
+        private long[] items = new long[4];
+        private int head;
+        private int size;
+        private double tokens;
+        private long refilledAt;
+
+        private Shard( double tokens, long now ) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void add( long endpoint ) {
+            if( size == items.length ) {
+                final long[] grown = new long[items.length * 2];
+                for( int i = 0; i < size; i++ ) {
+                    grown[i] = items[( head + i ) & ( items.length - 1 )];
+                }
+                items = grown;
+                head = 0;
+            }
+            items[( head + size ) & ( items.length - 1 )] = endpoint;
+            size++;
+        }
+
+        private long remove() {
+            final long endpoint = items[head];
+            head = ( head + 1 ) & ( items.length - 1 );
+            size--;
+            return endpoint;
+        }
+
+        private void refill( long now, double tokensPerNano, double burst ) {
+            if( now > refilledAt ) {
+                tokens = Math.min( burst, tokens + ( now - refilledAt ) * tokensPerNano );
+                refilledAt = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.proxychecker.service;
+
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.service.result.ProxyResultSet;
+import com.proxychecker.service.result.ResultSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Общие проверки списков: одинаковые запросы, пришедшие во время проверки, подключаются к ней,
+ * а не запускают свою, и получают уже найденные прокси, а затем новые по мере проверки.
+ * Завершенная проверка отдается повторно, пока не старше {@code freshMillis}; проверка с ошибкой не кешируется.
+ * Устаревшие проверки удаляются при следующем запросе любой проверки: ключ включает {@code limit} запроса,
+ * и без этого каждое новое значение оставляло бы в памяти свой набор результатов.
+ */
+class SweepCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( SweepCache.class );
+
+    private final ConcurrentHashMap<String, SharedSweep> sweeps = new ConcurrentHashMap<>();
+    private final long freshNanos;
+    private final LongSupplier clock;
+
+    /**
+     * @param freshMillis - сколько отдавать результаты завершенной проверки; {@code 0} — только объединять идущие
+     * @param clock       - источник времени в наносекундах
+     */
+    SweepCache( long freshMillis, LongSupplier clock ) {
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos( freshMillis );
+        this.clock = clock;
+    }
+
+    /**
+     * Идущая или свежая завершенная проверка по ключу; если такой нет — запускает новую в виртуальном потоке
+     *
+     * @param key    - параметры проверки, определяющие ее результат
+     * @param runner - проверка, отдающая рабочие прокси в переданный приемник
+     */
+    SharedSweep obtain( String key, SweepRunner runner ) {
+        final long now = clock.getAsLong();
+        sweeps.values().removeIf( sweep -> ! sweep.isFresh( now, freshNanos ) );
+        while( true ) {
+            final SharedSweep existing = sweeps.get( key );
+            if( existing != null && existing.isFresh( now, freshNanos ) ) {
+                logger.debug( "Reusing {} sweep for '{}'", existing.isDone() ? "completed" : "running", key );
+                return existing;
+            }
+            final SharedSweep created = new SharedSweep();
+            final boolean replaced = existing == null
+                    ? sweeps.putIfAbsent( key, created ) == null
+                    : sweeps.replace( key, existing, created );
+            if( replaced ) {
+                Thread.ofVirtual().name( "proxy-sweep" ).start( () -> run( key, created, runner ) );
+                return created;
+            }
+        }
+    }
+
+    // Проверки в кеше: идущие и еще не устаревшие завершенные
+    int size() {
+        return sweeps.size();
+    }
+
+    private void run( String key, SharedSweep sweep, SweepRunner runner ) {
+        try {
+            runner.run( sweep.found, sweep::publish );
+            sweep.complete( clock.getAsLong() );
+            if( freshNanos == 0 ) {
+                sweeps.remove( key, sweep );
+            }
+        } catch( Throwable e ) {
+            sweeps.remove( key, sweep );
+            sweep.fail( e );
+        }
+    }
+
+    @FunctionalInterface
+    interface SweepRunner {
+
+        /**
+         * @param results   - набор, в который приемник складывает результаты проверки
+         * @param onWorking - приемник рабочих прокси
+         */
+        void run( ProxyResultSet results, ResultSink onWorking ) throws Exception;
+    }
+
+    /**
+     * Результаты одной проверки и ее подписчики. Результаты копятся в колоночном наборе;
+     * {@link ProxyDto} создается, только когда есть кому его отдать. Подписчики вызываются
+     * вне блокировки: медленный подписчик не задерживает запись результатов и других подписчиков
+     */
+    static final class SharedSweep {
+
+        private final ProxyResultSet found = new ProxyResultSet();
+        private final List<Consumer<ProxyDto>> listeners = new ArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        /**
+         * Отдает найденные прокси и подписывает на новые до конца проверки
+         *
+         * @return {@link #completion()}
+         */
+        CompletableFuture<Void> subscribe( Consumer<ProxyDto> listener ) {
+            final List<ProxyDto> replay;
+            synchronized( this ) {
+                replay = found.page( 0, found.size(), null, false );
+                if( ! done.isDone() ) {
+                    listeners.add( listener );
+                }
+            }
+            // Новые прокси могут прийти раньше, чем закончится отдача уже найденных; повторов нет
+            for( ProxyDto proxyDto : replay ) {
+                if( ! deliver( listener, proxyDto ) ) {
+                    break;
+                }
+            }
+            return done;
+        }
+
+        // Все найденные прокси завершенной проверки
+        synchronized List<ProxyDto> results() {
+            return found.page( 0, found.size(), null, false );
+        }
+
+        // Колоночный набор проверки; во время проверки пополняется
+        ProxyResultSet resultSet() {
+            return found;
+        }
+
+        boolean isDone() {
+            return done.isDone();
+        }
+
+        private boolean isFresh( long now, long freshNanos ) {
+            return ! done.isDone() || ( ! done.isCompletedExceptionally() && now - completedAt < freshNanos );
+        }
+
+        // Завершение проверки; исключительное, если проверка упала
+        CompletableFuture<Void> completion() {
+            return done;
+        }
+
+        private void publish( int address, int port, String proxyType, int latencyMicros, String country ) {
+            final List<Consumer<ProxyDto>> targets;
+            final ProxyDto proxyDto;
+            synchronized( this ) {
+                found.add( address, port, proxyType, latencyMicros, country );
+                if( listeners.isEmpty() ) {
+                    return;
+                }
+                targets = List.copyOf( listeners );
+                proxyDto = found.get( found.size() - 1 );
+            }
+            for( Consumer<ProxyDto> listener : targets ) {
+                deliver( listener, proxyDto );
+            }
+        }
+
+        // Подписчик, который больше не принимает прокси (например, закрытый или отстающий поток), отписывается, не мешая остальным
+        private boolean deliver( Consumer<ProxyDto> listener, ProxyDto proxyDto ) {
+            try {
+                listener.accept( proxyDto );
+                return true;
+            } catch( RuntimeException e ) {
+                logger.debug( "Sweep listener dropped: {}", e.toString() );
+                synchronized( this ) {
+                    listeners.remove( listener );
+                }
+                return false;
+            }
+        }
+
+        private synchronized void complete( long now ) {
+            completedAt = now;
+            listeners.clear();
+            done.complete( null );
+        }
+
+        private synchronized void fail( Throwable e ) {
+            listeners.clear();
+            done.completeExceptionally( e );
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.proxychecker.service;
+
+import com.proxychecker.dto.ProxyDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Поток рабочих прокси общей проверки для одного подписчика.
+ * <p>
+ * Проверка берется при подписке, подписчик получает уже найденные прокси и дальше — новые.
+ * Прокси доставляются в {@code executor}: отправка подписчиком по сети блокирует поток доставки,
+ * поэтому общий {@code ForkJoinPool} для нее не подходит. Отменивший подписку подписчик
+ * отписывается от проверки при следующем прокси.
+ * <p>
+ * В буфер подписчика прокси кладет поток проверки, который их нашел. Если буфер полон дольше
+ * {@code sendTimeoutMillis}, подписчик получает ошибку и отключается: один медленный клиент
+ * не должен тормозить проверку и остальных ее подписчиков.
+ */
+final class SweepPublisher implements Flow.Publisher<ProxyDto> {
+
+    private static final Logger logger = LoggerFactory.getLogger( SweepPublisher.class );
+
+    private final Supplier<SweepCache.SharedSweep> sweep;
+    private final Executor executor;
+    private final long sendTimeoutMillis;
+
+    /**
+     * @param sweep             - общая проверка, к которой подключается подписчик
+     * @param executor          - потоки доставки прокси подписчику
+     * @param sendTimeoutMillis - сколько ждать места в буфере подписчика
+     */
+    SweepPublisher( Supplier<SweepCache.SharedSweep> sweep, Executor executor, long sendTimeoutMillis ) {
+        this.sweep = sweep;
+        this.executor = executor;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+    }
+
+    @Override
+    public void subscribe( Flow.Subscriber<? super ProxyDto> subscriber ) {
+        final SubmissionPublisher<ProxyDto> publisher = new SubmissionPublisher<>( executor, Flow.defaultBufferSize() );
+        publisher.subscribe( subscriber );
+        // Уже найденные прокси отдаются не в потоке подписчика: отправка может ждать медленного получателя
+        Thread.ofVirtual().name( "proxy-stream" ).start( () -> {
+            try {
+                sweep.get().subscribe( proxyDto -> {
+                    if( ! publisher.hasSubscribers() ) {
+                        throw new CancellationException( "Stream subscriber cancelled" );
+                    }
+                    if( publisher.offer( proxyDto, sendTimeoutMillis, TimeUnit.MILLISECONDS, ( slow, dropped ) -> false ) < 0 ) {
+                        final RuntimeException tooSlow = new IllegalStateException( "Stream subscriber is too slow" );
+                        publisher.closeExceptionally( tooSlow );
+                        throw tooSlow;
+                    }
+                } ).whenComplete( ( ignored, e ) -> {
+                    if( e == null ) {
+                        publisher.close();
+                    } else {
+                        fail( publisher, e );
+                    }
+                } );
+            } catch( RuntimeException e ) {
+                fail( publisher, e );
+            }
+        } );
+    }
+
+    private static void fail( SubmissionPublisher<ProxyDto> publisher, Throwable e ) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        logger.error( "Error during proxy streaming process: {}", cause.getMessage() );
+        publisher.closeExceptionally( cause );
+    }
+}
@@ -0,0 +1,32 @@
+package com.proxychecker.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счетчик незавершенных проверок одного прохода по списку.
+ * <p>
+ * Заменяет список фьючерсов: проверки начинаются, пока источник еще читается,
+ * а {@link #await(CompletableFuture)} возвращается, когда источник прочитан и все проверки завершены.
+ */
+public class SweepTracker {
+
+    private final AtomicInteger pending = new AtomicInteger( 1 ); // 1 — источник еще читается
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    public void begin() {
+        pending.incrementAndGet();
+    }
+
+    public void end() {
+        if( pending.decrementAndGet() == 0 ) {
+            done.complete( null );
+        }
+    }
+
+    // Источник прочитан: ждем оставшиеся проверки или досрочного завершения прохода
+    public void await( CompletableFuture<?> stop ) {
+        end();
+        CompletableFuture.anyOf( done, stop ).join();
+    }
+}
@@ -0,0 +1,48 @@
+package com.proxychecker.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Проверка списка в режиме virtual: каждый адрес — в своем виртуальном потоке.
+ * <p>
+ * Семафор запроса не дает одной проверке занять все ресурсы: когда в работе {@code maxConcurrent}
+ * проверок, {@link #accept} ждет освобождения места и тем самым притормаживает чтение источника.
+ * {@link #close()} дожидается завершения всех проверок.
+ */
+final class VirtualSweep implements EndpointSink, AutoCloseable {
+
+    private final Semaphore permits;
+    private final EndpointSink check;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param maxConcurrent - проверок одного запроса одновременно
+     * @param check         - блокирующая проверка одного адреса
+     */
+    VirtualSweep( int maxConcurrent, EndpointSink check ) {
+        if( maxConcurrent <= 0 ) {
+            throw new IllegalArgumentException( "Max concurrent checks must be positive: " + maxConcurrent );
+        }
+        this.permits = new Semaphore( maxConcurrent );
+        this.check = check;
+    }
+
+    @Override
+    public void accept( int address, int port ) {
+        permits.acquireUninterruptibly();
+        executor.execute( () -> {
+            try {
+                check.accept( address, port );
+            } finally {
+                permits.release();
+            }
+        } );
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -0,0 +1,140 @@
+package com.proxychecker.service.cluster;
+
+import com.proxychecker.service.result.ProxyResultSet;
+import com.proxychecker.service.result.ResultSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Распределенная проверка списков: координатор делит адреса между исполнителями кластера.
+ * <p>
+ * Адрес закрепляется за исполнителем согласованным хешированием по подсети /24 — все адреса подсети
+ * проверяет один узел, и ограничение темпа на подсеть действует в масштабе кластера. Адреса копятся
+ * пачками по {@code chunk-size} и отправляются по HTTP, у каждого исполнителя не больше
+ * {@code max-chunks-per-worker} пачек в работе. Пачка, на которую исполнитель не ответил за
+ * {@code chunk-timeout-millis} или ответил ошибкой, переходит к следующему узлу кольца,
+ * а если живых узлов не осталось — проверяется локально. Новые адреса такого исполнителя
+ * до конца проверки тоже достаются следующему узлу.
+ * <p>
+ * Узел принимает пачки, только если включен {@code proxy.checker.cluster.worker.enabled}, и только
+ * с общим ключом кластера {@code proxy.checker.cluster.token}: без него любой, кто достучится до исполнителя,
+ * мог бы заставить его подключаться к произвольным адресам. Без ключа узел не стартует ни координатором,
+ * ни исполнителем.
+ */
+@Component
+public class ClusterCoordinator {
+
+    private static final int REPLICAS = 128;
+
+    private final List<URI> workers;
+    private final HashRing ring;
+    private final HttpClient httpClient;
+    private final int chunkSize;
+    private final Duration chunkTimeout;
+    private final int maxChunksPerWorker;
+    private final boolean worker;
+    private final byte[] token;
+
+    /**
+     * @param workers            - адреса исполнителей через запятую, например {@code http://host:8080}; пусто — без распределения
+     * @param chunkSize          - адресов в одной пачке
+     * @param chunkTimeoutMillis - сколько ждать ответа на пачку до передачи ее другому узлу
+     * @param maxChunksPerWorker - пачек одновременно в работе у одного исполнителя
+     * @param worker             - принимать пачки от координатора
+     * @param token              - общий ключ кластера; координатор отправляет его, исполнитель проверяет
+     */
+    public ClusterCoordinator( @Value( "${proxy.checker.cluster.workers:}" ) String workers,
+                               @Value( "${proxy.checker.cluster.chunk-size:2000}" ) int chunkSize,
+                               @Value( "${proxy.checker.cluster.chunk-timeout-millis:60000}" ) long chunkTimeoutMillis,
+                               @Value( "${proxy.checker.cluster.max-chunks-per-worker:4}" ) int maxChunksPerWorker,
+                               @Value( "${proxy.checker.cluster.worker.enabled:false}" ) boolean worker,
+                               @Value( "${proxy.checker.cluster.token:}" ) String token ) {
+        final List<String> urls = Arrays.stream( workers.split( "," ) )
+                .map( String::trim )
+                .filter( url -> ! url.isEmpty() )
+                .map( url -> url.endsWith( "/" ) ? url.substring( 0, url.length() - 1 ) : url )
+                .toList();
+        if( chunkSize <= 0 || chunkSize > ClusterProtocol.MAX_CHUNK_SIZE || maxChunksPerWorker <= 0 ) {
+            throw new IllegalArgumentException( "Invalid cluster chunk settings: " + chunkSize + ", " + maxChunksPerWorker );
+        }
+        if( ( worker || ! urls.isEmpty() ) && token.isBlank() ) {
+            throw new IllegalArgumentException( "proxy.checker.cluster.token is required for cluster mode" );
+        }
+        this.workers = urls.stream().map( url -> URI.create( url + ClusterProtocol.WORKER_PATH ) ).toList();
+        this.ring = urls.isEmpty() ? null : new HashRing( urls, REPLICAS );
+        this.httpClient = HttpClient.newBuilder()
+                .version( HttpClient.Version.HTTP_1_1 )
+                .connectTimeout( Duration.ofMillis( Math.min( chunkTimeoutMillis, 5000 ) ) )
+                .build();
+        this.chunkSize = chunkSize;
+        this.chunkTimeout = Duration.ofMillis( chunkTimeoutMillis );
+        this.maxChunksPerWorker = maxChunksPerWorker;
+        this.worker = worker;
+        this.token = token.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    // Проверки списков распределяются по исполнителям
+    public boolean isCoordinator() {
+        return ring != null;
+    }
+
+    // Узел принимает пачки координатора
+    public boolean isWorker() {
+        return worker;
+    }
+
+    /**
+     * @param presented - ключ из заголовка {@link ClusterProtocol#TOKEN_HEADER}
+     * @return совпадает ли он с ключом кластера; сравнение за постоянное время
+     */
+    public boolean isAuthorized( String presented ) {
+        return presented != null && token.length > 0
+                && MessageDigest.isEqual( token, presented.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Начинает распределенную проверку: адреса передаются в {@link ClusterSweep#accept},
+     * рабочие прокси приходят в {@code onWorking} по мере ответов исполнителей
+     *
+     * @param protocols - маска протоколов рукопожатия
+     * @param fallback  - локальная проверка пачки, если ни один исполнитель не ответил
+     * @param recorder  - запись результатов пачки, проверенной исполнителем, до передачи в {@code onWorking}
+     */
+    public ClusterSweep start( int protocols, ResultSink onWorking, ChunkChecker fallback, ChunkRecorder recorder ) {
+        if( ring == null ) {
+            throw new IllegalStateException( "No cluster workers configured" );
+        }
+        return new ClusterSweep( workers, ring, httpClient, new String( token, StandardCharsets.UTF_8 ), chunkSize,
+                chunkTimeout, maxChunksPerWorker, protocols, onWorking, fallback, recorder );
+    }
+
+    /**
+     * Проверка пачки адресов на текущем узле
+     */
+    @FunctionalInterface
+    public interface ChunkChecker {
+
+        ProxyResultSet check( long[] endpoints, int protocols ) throws InterruptedException;
+    }
+
+    /**
+     * Запись результатов пачки, проверенной исполнителем: координатор ведет свои журнал состояний и пул
+     */
+    @FunctionalInterface
+    public interface ChunkRecorder {
+
+        /**
+         * @param chunk   - адреса пачки; не попавшие в {@code working} не прошли проверку
+         * @param working - рабочие прокси пачки
+         */
+        void record( long[] chunk, ProxyResultSet working );
+    }
+}
@@ -0,0 +1,42 @@
+package com.proxychecker.service.cluster;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Протокол обмена координатора с исполнителями.
+ * <p>
+ * Координатор отправляет {@code POST} на {@link #WORKER_PATH} с маской протоколов в параметре
+ * {@code protocols}; тело запроса — упакованные адреса {@link com.proxychecker.util.Endpoints},
+ * по 8 байт big-endian. Исполнитель проверяет адреса и отвечает рабочими прокси в бинарном
+ * формате {@link com.proxychecker.service.result.ProxyResultSet#writeBinary}, в котором не больше строк,
+ * чем адресов в пачке. Запрос без общего ключа кластера в заголовке {@link #TOKEN_HEADER} исполнитель отклоняет.
+ */
+public final class ClusterProtocol {
+
+    public static final String WORKER_PATH = "/api/proxy/worker/check";
+
+    public static final String TOKEN_HEADER = "X-Cluster-Token";
+
+    // Ограничение размера пачки на стороне исполнителя
+    public static final int MAX_CHUNK_SIZE = 100_000;
+
+    private ClusterProtocol() {
+    }
+
+    public static byte[] encode( long[] endpoints, int count ) {
+        final ByteBuffer buffer = ByteBuffer.allocate( count * Long.BYTES );
+        for( int i = 0; i < count; i++ ) {
+            buffer.putLong( endpoints[i] );
+        }
+        return buffer.array();
+    }
+
+    public static long[] decode( byte[] body ) {
+        if( body.length % Long.BYTES != 0 ) {
+            throw new IllegalArgumentException( "Chunk length is not a multiple of 8: " + body.length );
+        }
+        final long[] endpoints = new long[body.length / Long.BYTES];
+        ByteBuffer.wrap( body ).asLongBuffer().get( endpoints );
+        return endpoints;
+    }
+}
@@ -0,0 +1,201 @@
+package com.proxychecker.service.cluster;
+
+import com.proxychecker.service.EndpointSink;
+import com.proxychecker.service.SweepTracker;
+import com.proxychecker.service.result.ProxyResultSet;
+import com.proxychecker.service.result.ResultSink;
+import com.proxychecker.util.Endpoints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Одна распределенная проверка: раскладывает адреса по исполнителям, отправляет пачки
+ * и собирает рабочие прокси из ответов. Источники могут писать адреса из нескольких потоков.
+ */
+public class ClusterSweep implements EndpointSink {
+
+    private static final Logger logger = LoggerFactory.getLogger( ClusterSweep.class );
+
+    private final List<URI> workers;
+    private final HashRing ring;
+    private final HttpClient httpClient;
+    private final String token;
+    private final int chunkSize;
+    private final Duration chunkTimeout;
+    private final int protocols;
+    private final ResultSink onWorking;
+    private final ClusterCoordinator.ChunkChecker fallback;
+    private final ClusterCoordinator.ChunkRecorder recorder;
+    private final SweepTracker tracker = new SweepTracker();
+
+    private final int local; // Номер «исполнителя» для адресов, которые проверяются на этом узле
+    private final long[][] buffers; // Незаполненная пачка каждого исполнителя и локальная, под блокировкой this
+    private final int[] counts;
+    private final Semaphore[] permits;
+    private final boolean[] failed; // Исполнители, не ответившие в этой проверке, под блокировкой this
+
+    ClusterSweep( List<URI> workers, HashRing ring, HttpClient httpClient, String token, int chunkSize, Duration chunkTimeout,
+                  int maxChunksPerWorker, int protocols, ResultSink onWorking, ClusterCoordinator.ChunkChecker fallback,
+                  ClusterCoordinator.ChunkRecorder recorder ) {
+        this.workers = workers;
+        this.ring = ring;
+        this.httpClient = httpClient;
+        this.token = token;
+        this.chunkSize = chunkSize;
+        this.chunkTimeout = chunkTimeout;
+        this.protocols = protocols;
+        this.onWorking = onWorking;
+        this.fallback = fallback;
+        this.recorder = recorder;
+        this.local = workers.size();
+        this.buffers = new long[workers.size() + 1][chunkSize];
+        this.counts = new int[workers.size() + 1];
+        this.permits = new Semaphore[workers.size()];
+        for( int i = 0; i < permits.length; i++ ) {
+            permits[i] = new Semaphore( maxChunksPerWorker );
+        }
+        this.failed = new boolean[workers.size()];
+    }
+
+    // Исполнители, которые уже не ответили, новых адресов не получают: они уходят следующему живому узлу
+    @Override
+    public void accept( int address, int port ) {
+        final int worker;
+        final long[] chunk;
+        synchronized( this ) {
+            final int owner = ring.owner( address >>> 8, failed );
+            worker = owner >= 0 ? owner : local;
+            buffers[worker][counts[worker]++] = Endpoints.pack( address, port );
+            if( counts[worker] < chunkSize ) {
+                return;
+            }
+            chunk = buffers[worker];
+            buffers[worker] = new long[chunkSize];
+            counts[worker] = 0;
+        }
+        dispatch( worker, chunk );
+    }
+
+    /**
+     * Источник прочитан: отправляет неполные пачки и ждет ответов
+     *
+     * @param stop - досрочное завершение: ответы, пришедшие после него, не ждем
+     */
+    public void finish( CompletableFuture<?> stop ) {
+        for( int worker = 0; worker < buffers.length; worker++ ) {
+            final long[] chunk;
+            synchronized( this ) {
+                if( counts[worker] == 0 ) {
+                    continue;
+                }
+                chunk = Arrays.copyOf( buffers[worker], counts[worker] );
+                counts[worker] = 0;
+            }
+            dispatch( worker, chunk );
+        }
+        tracker.await( stop );
+    }
+
+    // Пачка владельца; ожидание свободного места у исполнителя притормаживает чтение источника
+    private void dispatch( int worker, long[] chunk ) {
+        tracker.begin();
+        if( worker == local ) {
+            checkLocally( chunk );
+            return;
+        }
+        permits[worker].acquireUninterruptibly();
+        send( worker, chunk );
+    }
+
+    // Пачка отправляется с уже занятым местом у исполнителя; место освобождается по ответу
+    private void send( int worker, long[] chunk ) {
+        final HttpRequest request = HttpRequest.newBuilder( URI.create( workers.get( worker ) + "?protocols=" + protocols ) )
+                .timeout( chunkTimeout )
+                .header( "Content-Type", "application/octet-stream" )
+                .header( ClusterProtocol.TOKEN_HEADER, token )
+                .POST( HttpRequest.BodyPublishers.ofByteArray( ClusterProtocol.encode( chunk, chunk.length ) ) )
+                .build();
+        httpClient.sendAsync( request, HttpResponse.BodyHandlers.ofByteArray() ).whenComplete( ( response, error ) -> {
+            permits[worker].release();
+            final ProxyResultSet results = received( worker, chunk, response, error );
+            if( results == null ) {
+                reassign( worker, chunk );
+                return;
+            }
+            // Пачка принята: что бы ни случилось при разборе результатов, она завершается ровно один раз
+            try {
+                recorder.record( chunk, results );
+                publish( results );
+            } catch( RuntimeException e ) {
+                logger.error( "Error while merging a chunk from worker {}: {}", workers.get( worker ), e.toString() );
+            } finally {
+                tracker.end();
+            }
+        } );
+    }
+
+    // Рабочие прокси из ответа исполнителя или null, если пачку нужно передать другому узлу
+    private ProxyResultSet received( int worker, long[] chunk, HttpResponse<byte[]> response, Throwable error ) {
+        try {
+            if( error == null && response.statusCode() == 200 ) {
+                // В ответе не больше строк, чем адресов в пачке: размер колонок задает не исполнитель
+                return ProxyResultSet.readBinary( new ByteArrayInputStream( response.body() ), chunk.length );
+            }
+            final String reason = error != null ? error.toString() : "HTTP " + response.statusCode();
+            logger.warn( "Worker {} failed a chunk of {} endpoints: {}", workers.get( worker ), chunk.length, reason );
+        } catch( IOException | RuntimeException e ) {
+            logger.warn( "Worker {} returned an unreadable chunk: {}", workers.get( worker ), e.toString() );
+        }
+        return null;
+    }
+
+    // Пачка переходит к следующему живому узлу кольца, а если таких нет — проверяется здесь.
+    // Переданная пачка занимает место у нового исполнителя, как и новая: пачки упавшего узла не обрушиваются
+    // на соседа разом. Место ждет отдельный поток, а не поток ответа HTTP-клиента
+    private void reassign( int worker, long[] chunk ) {
+        final int next;
+        synchronized( this ) {
+            failed[worker] = true;
+            next = ring.owner( Endpoints.address( chunk[0] ) >>> 8, failed );
+        }
+        if( next >= 0 ) {
+            Thread.ofVirtual().name( "cluster-reassign" ).start( () -> {
+                permits[next].acquireUninterruptibly();
+                send( next, chunk );
+            } );
+            return;
+        }
+        checkLocally( chunk );
+    }
+
+    // Локальная проверка сама записывает результаты в журнал и пул, здесь они только отдаются дальше
+    private void checkLocally( long[] chunk ) {
+        Thread.ofVirtual().name( "cluster-fallback" ).start( () -> {
+            try {
+                publish( fallback.check( chunk, protocols ) );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            } catch( RuntimeException e ) {
+                logger.error( "Error while checking a chunk of {} endpoints locally: {}", chunk.length, e.toString() );
+            } finally {
+                tracker.end();
+            }
+        } );
+    }
+
+    private void publish( ProxyResultSet results ) {
+        results.forEach( onWorking );
+    }
+}
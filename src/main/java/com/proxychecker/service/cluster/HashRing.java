@@ -0,0 +1,69 @@
+package com.proxychecker.service.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Кольцо согласованного хеширования узлов кластера.
+ * <p>
+ * Каждый узел занимает {@code replicas} точек кольца, положение точек зависит только от адреса узла:
+ * при добавлении или удалении узла переезжает лишь его доля ключей. Точка хранится в {@code long}:
+ * старшие 32 бита — хеш, младшие — номер узла, так что кольцо — один отсортированный массив.
+ */
+class HashRing {
+
+    private final long[] points;
+    private final int nodes;
+
+    HashRing( List<String> nodes, int replicas ) {
+        if( nodes.isEmpty() || replicas <= 0 ) {
+            throw new IllegalArgumentException( "Hash ring needs nodes and positive replicas" );
+        }
+        this.nodes = nodes.size();
+        this.points = new long[nodes.size() * replicas];
+        int i = 0;
+        for( int node = 0; node < nodes.size(); node++ ) {
+            final int seed = nodes.get( node ).hashCode();
+            for( int replica = 0; replica < replicas; replica++ ) {
+                points[i++] = ( (long) mix( seed * 31 + mix( replica ) ) << 32 ) | node;
+            }
+        }
+        Arrays.sort( points );
+    }
+
+    int nodes() {
+        return nodes;
+    }
+
+    /**
+     * Узел, которому принадлежит ключ: первая точка кольца не меньше хеша ключа
+     *
+     * @param excluded - узлы, которые нужно пропустить, или {@code null}
+     * @return номер узла или {@code -1}, если исключены все
+     */
+    int owner( int key, boolean[] excluded ) {
+        final long hash = (long) mix( key ) << 32;
+        int start = Arrays.binarySearch( points, hash );
+        if( start < 0 ) {
+            start = -start - 1;
+        }
+        for( int i = 0; i < points.length; i++ ) {
+            final int node = (int) points[( start + i ) % points.length];
+            if( excluded == null || ! excluded[node] ) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    // Финализатор MurmurHash3: соседние ключи (подсети подряд) расходятся по всему кольцу
+    private static int mix( int value ) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
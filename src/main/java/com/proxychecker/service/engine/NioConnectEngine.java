@@ -0,0 +1,395 @@
+package com.proxychecker.service.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Неблокирующий движок проверки прокси на {@link Selector}.
+ * <p>
+ * Один поток селектора держит до {@code maxInFlight} одновременных проверок,
+ * остальные ждут в очереди. Таймауты обслуживаются колесом таймеров, поэтому время
+ * проверки списка ограничено таймаутом, а не количеством потоков.
+ * <p>
+ * Сразу после подключения, в том же потоке, выполняется рукопожатие {@link ProxyHandshake}:
+ * каждая проверка получает свой буфер из заранее выделенного блока. Если протоколов несколько,
+ * они перебираются по очереди, каждый — на новом соединении.
+ * <p>
+ * Фьючерсы завершаются в потоке селектора — зависимые этапы с блокирующей работой
+ * нужно навешивать через {@code *Async}-методы со своим исполнителем.
+ */
+@Component
+public class NioConnectEngine implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger( NioConnectEngine.class );
+
+    private static final int WHEEL_SIZE = 512;
+    private static final long TICK_MILLIS = 10;
+
+    private final Selector selector;
+    private final Queue<ConnectTask> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(); // Размер очереди: size() у ConcurrentLinkedQueue линейный
+    private final AtomicBoolean wakeupRequested = new AtomicBoolean();
+    private final TimerWheel<ConnectTask> timeouts;
+    private final Thread selectorThread;
+    private final int maxInFlight;
+    private final long connectTimeoutNanos;
+    private final long handshakeTimeoutNanos;
+    private final ProxyHandshake handshake;
+
+    // Буферы рукопожатий: по одному на слот одновременной проверки, изменяются только потоком селектора
+    private final ByteBuffer[] buffers;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    private volatile boolean running = true;
+    private volatile int inFlight; // Изменяется только потоком селектора, читается метриками
+
+    /**
+     * @param maxInFlight            - максимальное число одновременных проверок
+     * @param connectTimeoutMillis   - таймаут подключения
+     * @param handshakeTarget        - адрес назначения рукопожатий, {@code ip:port}
+     * @param handshakeTimeoutMillis - таймаут каждого этапа рукопожатия
+     */
+    public NioConnectEngine( @Value( "${proxy.checker.nio.max-in-flight:4096}" ) int maxInFlight,
+                             @Value( "${proxy.checker.connect-timeout:3000}" ) long connectTimeoutMillis,
+                             @Value( "${proxy.checker.handshake.target:1.1.1.1:443}" ) String handshakeTarget,
+                             @Value( "${proxy.checker.handshake.timeout:3000}" ) long handshakeTimeoutMillis ) {
+        if( maxInFlight <= 0 ) {
+            throw new IllegalArgumentException( "Max in-flight connections must be positive: " + maxInFlight );
+        }
+        this.maxInFlight = maxInFlight;
+        this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos( connectTimeoutMillis );
+        this.handshakeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos( handshakeTimeoutMillis );
+        this.handshake = ProxyHandshake.forTarget( handshakeTarget );
+        this.timeouts = new TimerWheel<>( WHEEL_SIZE, TimeUnit.MILLISECONDS.toNanos( TICK_MILLIS ), System.nanoTime() );
+
+        final ByteBuffer block = ByteBuffer.allocateDirect( maxInFlight * ProxyHandshake.BUFFER_SIZE );
+        this.buffers = new ByteBuffer[maxInFlight];
+        this.freeSlots = new int[maxInFlight];
+        for( int slot = 0; slot < maxInFlight; slot++ ) {
+            buffers[slot] = block.slice( slot * ProxyHandshake.BUFFER_SIZE, ProxyHandshake.BUFFER_SIZE );
+            freeSlots[slot] = slot;
+        }
+        this.freeCount = maxInFlight;
+
+        try {
+            this.selector = Selector.open();
+        } catch( IOException e ) {
+            throw new UncheckedIOException( "Unable to open selector", e );
+        }
+        this.selectorThread = new Thread( this::runLoop, "nio-connect-engine" );
+        this.selectorThread.setDaemon( true );
+        this.selectorThread.start();
+    }
+
+    /**
+     * Асинхронно устанавливает TCP-соединение и сразу его закрывает.
+     *
+     * @param address - адрес прокси-сервера
+     * @return время подключения в миллисекундах или {@code HTTP_PROXY_ERROR}, если подключиться не удалось
+     */
+    public CompletableFuture<Long> connect( InetSocketAddress address ) {
+        return probe( address, ProxyProtocol.NONE ).thenApply( ProbeResult::elapsedMillis );
+    }
+
+    /**
+     * Асинхронно подключается и проверяет прокси рукопожатием.
+     *
+     * @param address   - адрес прокси-сервера
+     * @param protocols - маска протоколов {@link ProxyProtocol}; {@link ProxyProtocol#NONE} — только подключение
+     * @return результат проверки; фьючерс не завершается исключением
+     */
+    public CompletableFuture<ProbeResult> probe( InetSocketAddress address, int protocols ) {
+        return submit( new ConnectTask( address, protocols, connectTimeoutNanos ) );
+    }
+
+    /**
+     * Асинхронно подключается и проверяет прокси рукопожатием со своим таймаутом подключения.
+     *
+     * @param address              - адрес прокси-сервера
+     * @param protocols            - маска протоколов {@link ProxyProtocol}; {@link ProxyProtocol#NONE} — только подключение
+     * @param connectTimeoutMillis - таймаут подключения этой проверки
+     * @return результат проверки; фьючерс не завершается исключением
+     */
+    public CompletableFuture<ProbeResult> probe( InetSocketAddress address, int protocols, long connectTimeoutMillis ) {
+        return submit( new ConnectTask( address, protocols, TimeUnit.MILLISECONDS.toNanos( connectTimeoutMillis ) ) );
+    }
+
+    private CompletableFuture<ProbeResult> submit( ConnectTask task ) {
+        if( ! running ) {
+            task.future.complete( ProbeResult.FAILED );
+            return task.future;
+        }
+        queued.incrementAndGet();
+        pending.add( task );
+        // Один wakeup на пачку заявок, а не на каждую
+        if( wakeupRequested.compareAndSet( false, true ) ) {
+            selector.wakeup();
+        }
+        return task.future;
+    }
+
+    // Проверки, которые сейчас держат соединение
+    public int inFlight() {
+        return inFlight;
+    }
+
+    // Проверки, ожидающие свободного слота
+    public int queued() {
+        return queued.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join( TimeUnit.SECONDS.toMillis( 5 ) );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        try {
+            while( running ) {
+                startPending();
+                selector.select( TICK_MILLIS );
+                wakeupRequested.set( false );
+                for( SelectionKey key : selector.selectedKeys() ) {
+                    handle( key );
+                }
+                selector.selectedKeys().clear();
+                timeouts.expire( System.nanoTime(), task -> failStage( task, "timed out" ) );
+            }
+        } catch( IOException | ClosedSelectorException e ) {
+            logger.error( "Selector loop failed: {}", e.toString() );
+        } finally {
+            shutdown();
+        }
+    }
+
+    // Запускает ожидающие проверки в пределах лимита одновременных соединений
+    private void startPending() {
+        ConnectTask task;
+        while( inFlight < maxInFlight && ( task = pending.poll() ) != null ) {
+            queued.decrementAndGet();
+            inFlight++;
+            task.slot = freeSlots[--freeCount];
+            startConnect( task );
+        }
+    }
+
+    private void startConnect( ConnectTask task ) {
+        task.startNanos = System.nanoTime();
+        task.protocol = null;
+        try {
+            SocketChannel channel = SocketChannel.open();
+            task.channel = channel;
+            channel.configureBlocking( false );
+            if( channel.connect( task.address ) ) {
+                task.key = channel.register( selector, 0, task );
+                connected( task );
+            } else {
+                task.key = channel.register( selector, SelectionKey.OP_CONNECT, task );
+                timeouts.schedule( task, task.startNanos + task.connectTimeoutNanos );
+            }
+        } catch( Exception e ) {
+            // Неразрешенный адрес, исчерпание дескрипторов и т.п.
+            failStage( task, e.toString() );
+        }
+    }
+
+    private void handle( SelectionKey key ) {
+        ConnectTask task = (ConnectTask) key.attachment();
+        try {
+            if( ! key.isValid() ) {
+                return;
+            }
+            if( key.isConnectable() ) {
+                if( task.channel.finishConnect() ) {
+                    connected( task );
+                }
+            } else if( key.isWritable() ) {
+                write( task );
+            } else if( key.isReadable() ) {
+                read( task );
+            }
+        } catch( IOException e ) {
+            failStage( task, e.toString() );
+        }
+    }
+
+    private void connected( ConnectTask task ) throws IOException {
+        timeouts.cancel( task );
+        task.connectMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - task.startNanos );
+        task.protocol = ProxyProtocol.first( task.protocols );
+        if( task.protocol == null ) {
+            succeed( task );
+            return;
+        }
+        task.stage = 0;
+        sendRequest( task );
+    }
+
+    // Запрос этапа рукопожатия пишется сразу: буфер отправки нового соединения пуст
+    private void sendRequest( ConnectTask task ) throws IOException {
+        final ByteBuffer buffer = buffers[task.slot];
+        buffer.clear();
+        handshake.request( task.protocol, task.stage, buffer );
+        buffer.flip();
+        timeouts.cancel( task );
+        timeouts.schedule( task, System.nanoTime() + handshakeTimeoutNanos );
+        write( task );
+    }
+
+    private void write( ConnectTask task ) throws IOException {
+        final ByteBuffer buffer = buffers[task.slot];
+        task.channel.write( buffer );
+        if( buffer.hasRemaining() ) {
+            task.key.interestOps( SelectionKey.OP_WRITE );
+        } else {
+            buffer.clear();
+            task.key.interestOps( SelectionKey.OP_READ );
+        }
+    }
+
+    private void read( ConnectTask task ) throws IOException {
+        final ByteBuffer buffer = buffers[task.slot];
+        if( task.channel.read( buffer ) < 0 ) {
+            handshakeFailed( task, "connection closed" );
+            return;
+        }
+        final int result = handshake.response( task.protocol, task.stage, buffer.flip() );
+        buffer.position( buffer.limit() ).limit( buffer.capacity() );
+        switch( result ) {
+            case ProxyHandshake.DONE -> succeed( task );
+            case ProxyHandshake.NEXT_STAGE -> {
+                task.stage++;
+                sendRequest( task );
+            }
+            case ProxyHandshake.FAILED -> handshakeFailed( task, "unexpected response" );
+            default -> {
+                if( ! buffer.hasRemaining() ) {
+                    handshakeFailed( task, "response too long" );
+                }
+            }
+        }
+    }
+
+    // Ошибка подключения завершает проверку, ошибка рукопожатия — только попытку текущего протокола
+    private void failStage( ConnectTask task, String reason ) {
+        if( task.protocol == null ) {
+            fail( task, reason );
+        } else {
+            handshakeFailed( task, reason );
+        }
+    }
+
+    // Протокол не подтвердился — пробуем следующий на новом соединении, слот проверки сохраняется
+    private void handshakeFailed( ConnectTask task, String reason ) {
+        task.protocols &= ~task.protocol.mask();
+        if( task.protocols == ProxyProtocol.NONE ) {
+            fail( task, reason );
+            return;
+        }
+        if( logger.isDebugEnabled() ) {
+            logger.debug( "Proxy {} is not {}: {}", task.address, task.protocol, reason );
+        }
+        closeChannel( task );
+        startConnect( task );
+    }
+
+    private void succeed( ConnectTask task ) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - task.startNanos );
+        release( task );
+        task.future.complete( new ProbeResult( elapsedMillis, task.connectMillis, task.protocol ) );
+    }
+
+    private void fail( ConnectTask task, String reason ) {
+        logger.debug( "Error while checking proxy {}: {}", task.address, reason );
+        release( task );
+        task.future.complete( task.protocol == null ? ProbeResult.FAILED : ProbeResult.handshakeFailed( task.connectMillis ) );
+    }
+
+    private void release( ConnectTask task ) {
+        closeChannel( task );
+        freeSlots[freeCount++] = task.slot;
+        inFlight--;
+    }
+
+    private void closeChannel( ConnectTask task ) {
+        timeouts.cancel( task );
+        if( task.key != null ) {
+            task.key.cancel();
+            task.key = null;
+        }
+        if( task.channel != null ) {
+            try {
+                task.channel.close();
+            } catch( IOException ignored ) {
+                // Соединение больше не нужно
+            }
+            task.channel = null;
+        }
+    }
+
+    // Завершает все незавершенные проверки при остановке движка
+    private void shutdown() {
+        running = false;
+        if( selector.isOpen() ) {
+            for( SelectionKey key : selector.keys() ) {
+                if( key.attachment() instanceof ConnectTask task && ! task.future.isDone() ) {
+                    fail( task, "engine stopped" );
+                }
+            }
+        }
+        ConnectTask task;
+        while( ( task = pending.poll() ) != null ) {
+            queued.decrementAndGet();
+            task.future.complete( ProbeResult.FAILED );
+        }
+        try {
+            selector.close();
+        } catch( IOException ignored ) {
+            // Движок уже остановлен
+        }
+    }
+
+    private static final class ConnectTask extends TimerWheel.Entry {
+        private final InetSocketAddress address;
+        private final CompletableFuture<ProbeResult> future = new CompletableFuture<>();
+        private final long connectTimeoutNanos;
+        private int protocols; // Еще не проверенные протоколы
+        private ProxyProtocol protocol; // Протокол текущего рукопожатия, null — идет подключение
+        private int stage;
+        private int slot;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private long startNanos;
+        private long connectMillis;
+
+        private ConnectTask( InetSocketAddress address, int protocols, long connectTimeoutNanos ) {
+            this.address = address;
+            this.protocols = protocols;
+            this.connectTimeoutNanos = connectTimeoutNanos;
+        }
+    }
+}
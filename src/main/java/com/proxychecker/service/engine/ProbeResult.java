@@ -0,0 +1,28 @@
+package com.proxychecker.service.engine;
+
+import static com.proxychecker.constants.AppConstants.HTTP_PROXY_ERROR;
+
+/**
+ * Результат проверки прокси движком.
+ *
+ * @param elapsedMillis - время подключения и рукопожатия в миллисекундах или {@code HTTP_PROXY_ERROR}
+ * @param connectMillis - время подключения последней попытки или {@code HTTP_PROXY_ERROR}, если подключиться не удалось
+ * @param protocol      - протокол, подтвержденный рукопожатием; {@code null}, если рукопожатие не выполнялось
+ */
+public record ProbeResult( long elapsedMillis, long connectMillis, ProxyProtocol protocol ) {
+
+    public static final ProbeResult FAILED = new ProbeResult( HTTP_PROXY_ERROR, HTTP_PROXY_ERROR, null );
+
+    // Подключение удалось, но ни один протокол не подтвердился
+    public static ProbeResult handshakeFailed( long connectMillis ) {
+        return new ProbeResult( HTTP_PROXY_ERROR, connectMillis, null );
+    }
+
+    public boolean isSuccess() {
+        return elapsedMillis != HTTP_PROXY_ERROR;
+    }
+
+    public boolean isConnected() {
+        return connectMillis != HTTP_PROXY_ERROR;
+    }
+}
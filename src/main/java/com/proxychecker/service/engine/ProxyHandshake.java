@@ -0,0 +1,144 @@
+package com.proxychecker.service.engine;
+
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.Ipv4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Рукопожатия HTTP CONNECT, SOCKS4 и SOCKS5 до заданного адреса назначения.
+ * <p>
+ * Запросы собираются один раз в конструкторе; разбор ответов работает прямо на буфере чтения,
+ * без строк и аллокаций. SOCKS5 проходит в два этапа: приветствие без аутентификации и CONNECT.
+ * Прокси считается рабочим, только если он согласился открыть соединение до адреса назначения.
+ */
+public final class ProxyHandshake {
+
+    // Результаты разбора ответа
+    public static final int NEED_MORE = 0;
+    public static final int DONE = 1;
+    public static final int NEXT_STAGE = 2;
+    public static final int FAILED = -1;
+
+    // Самый длинный ответ, который нужно прочитать: статусная строка HTTP до кода включительно
+    public static final int BUFFER_SIZE = 256;
+
+    private static final byte[] HTTP_STATUS_PREFIX = "HTTP/1.".getBytes( StandardCharsets.US_ASCII );
+
+    private final byte[] httpConnect;
+    private final byte[] socks4Connect;
+    private final byte[] socks5Greeting = { 5, 1, 0 }; // Версия 5, один метод — без аутентификации
+    private final byte[] socks5Connect;
+
+    /**
+     * @param target - адрес назначения; только IPv4, чтобы не зависеть от DNS на стороне прокси
+     */
+    public ProxyHandshake( InetSocketAddress target ) {
+        if( target.isUnresolved() || target.getAddress().getAddress().length != 4 ) {
+            throw new IllegalArgumentException( "Handshake target must be an IPv4 address: " + target );
+        }
+        final byte[] ip = target.getAddress().getAddress();
+        final int port = target.getPort();
+        final String authority = target.getAddress().getHostAddress() + ":" + port;
+
+        this.httpConnect = ( "CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n" )
+                .getBytes( StandardCharsets.US_ASCII );
+        // VN=4, CD=1 (CONNECT), порт, адрес, пустой USERID
+        this.socks4Connect = new byte[]{ 4, 1, (byte) ( port >>> 8 ), (byte) port, ip[0], ip[1], ip[2], ip[3], 0 };
+        // VER=5, CMD=1 (CONNECT), RSV, ATYP=1 (IPv4), адрес, порт
+        this.socks5Connect = new byte[]{ 5, 1, 0, 1, ip[0], ip[1], ip[2], ip[3], (byte) ( port >>> 8 ), (byte) port };
+    }
+
+    /**
+     * @param target - адрес назначения в виде {@code ip:port}
+     */
+    public static ProxyHandshake forTarget( String target ) {
+        final int colon = target.lastIndexOf( ':' );
+        final long address = colon > 0 ? Ipv4.parse( target.substring( 0, colon ) ) : Ipv4.INVALID;
+        if( address == Ipv4.INVALID ) {
+            throw new IllegalArgumentException( "Handshake target must be ip:port: " + target );
+        }
+        return new ProxyHandshake( Endpoints.toSocketAddress( (int) address, Integer.parseInt( target.substring( colon + 1 ) ) ) );
+    }
+
+    /**
+     * Кладет в буфер запрос этапа рукопожатия
+     */
+    public void request( ProxyProtocol protocol, int stage, ByteBuffer out ) {
+        out.put( switch( protocol ) {
+            case HTTP -> httpConnect;
+            case SOCKS4 -> socks4Connect;
+            case SOCKS5 -> stage == 0 ? socks5Greeting : socks5Connect;
+        } );
+    }
+
+    /**
+     * Разбирает ответ этапа рукопожатия.
+     *
+     * @param in - прочитанные байты ответа от позиции 0 до {@code limit}
+     * @return {@link #NEED_MORE}, {@link #DONE}, {@link #NEXT_STAGE} или {@link #FAILED}
+     */
+    public int response( ProxyProtocol protocol, int stage, ByteBuffer in ) {
+        final int length = in.limit();
+        return switch( protocol ) {
+            // Достаточно статусной строки: "HTTP/1.x 2xx"
+            case HTTP -> {
+                if( length < HTTP_STATUS_PREFIX.length + 3 ) {
+                    yield NEED_MORE;
+                }
+                for( int i = 0; i < HTTP_STATUS_PREFIX.length; i++ ) {
+                    if( in.get( i ) != HTTP_STATUS_PREFIX[i] ) {
+                        yield FAILED;
+                    }
+                }
+                yield in.get( HTTP_STATUS_PREFIX.length + 1 ) == ' ' && in.get( HTTP_STATUS_PREFIX.length + 2 ) == '2'
+                        ? DONE : FAILED;
+            }
+            // VN=0, CD=90 — запрос разрешен
+            case SOCKS4 -> length < 8 ? NEED_MORE : in.get( 0 ) == 0 && in.get( 1 ) == 90 ? DONE : FAILED;
+            // Приветствие: VER=5, METHOD=0; CONNECT: VER=5, REP=0 — остаток ответа не нужен
+            case SOCKS5 -> length < 2 ? NEED_MORE
+                    : in.get( 0 ) != 5 || in.get( 1 ) != 0 ? FAILED
+                    : stage == 0 ? NEXT_STAGE : DONE;
+        };
+    }
+
+    /**
+     * Блокирующее рукопожатие на уже подключенном сокете.
+     *
+     * @param buffer - буфер не меньше {@link #BUFFER_SIZE}
+     * @return {@code true}, если прокси открыл соединение до адреса назначения
+     */
+    public boolean exchange( ProxyProtocol protocol, InputStream in, OutputStream out, byte[] buffer ) throws IOException {
+        final ByteBuffer wrapped = ByteBuffer.wrap( buffer );
+        for( int stage = 0; ; stage++ ) {
+            wrapped.clear();
+            request( protocol, stage, wrapped );
+            out.write( buffer, 0, wrapped.position() );
+            out.flush();
+
+            int read = 0;
+            int result = NEED_MORE;
+            while( result == NEED_MORE ) {
+                final int n = in.read( buffer, read, buffer.length - read );
+                if( n < 0 ) {
+                    return false;
+                }
+                read += n;
+                result = response( protocol, stage, wrapped.limit( read ).position( 0 ) );
+                if( result == NEED_MORE && read == buffer.length ) {
+                    return false;
+                }
+                wrapped.limit( buffer.length );
+            }
+            if( result != NEXT_STAGE ) {
+                return result == DONE;
+            }
+        }
+    }
+}
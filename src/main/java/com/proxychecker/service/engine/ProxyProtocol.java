@@ -0,0 +1,76 @@
+package com.proxychecker.service.engine;
+
+import static com.proxychecker.constants.AppConstants.*;
+
+/**
+ * Протоколы, которые проверяются рукопожатием. Набор протоколов передается битовой маской
+ * {@link #mask()}; при проверке они перебираются в порядке объявления.
+ */
+public enum ProxyProtocol {
+
+    HTTP( PROTOCOL_HTTP ),
+    SOCKS4( PROTOCOL_SOCKS4 ),
+    SOCKS5( PROTOCOL_SOCKS5 );
+
+    public static final int NONE = 0;
+    public static final int ALL = ( 1 << values().length ) - 1;
+
+    private static final ProxyProtocol[] VALUES = values();
+
+    private final String type;
+
+    ProxyProtocol( String type ) {
+        this.type = type;
+    }
+
+    // Тип прокси для ответа
+    public String type() {
+        return type;
+    }
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @return первый протокол из маски или {@code null}, если маска пуста
+     */
+    public static ProxyProtocol first( int protocols ) {
+        return protocols == NONE ? null : VALUES[Integer.numberOfTrailingZeros( protocols )];
+    }
+
+    /**
+     * @return протокол по номеру в журнале ({@code ordinal + 1}) или {@code null} для 0
+     */
+    public static ProxyProtocol fromCode( int code ) {
+        return code > 0 && code <= VALUES.length ? VALUES[code - 1] : null;
+    }
+
+    public int code() {
+        return ordinal() + 1;
+    }
+
+    /**
+     * @return протокол по типу из ответа {@link #type()} или {@code null}, если тип определен по порту
+     */
+    public static ProxyProtocol fromType( String type ) {
+        for( ProxyProtocol protocol : VALUES ) {
+            if( protocol.type.equals( type ) ) {
+                return protocol;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Маска протоколов по типу из запроса: {@code http}, {@code socks4}, {@code socks5} или {@code all}
+     */
+    public static int forType( String proxyType ) {
+        return switch( proxyType.toLowerCase() ) {
+            case "http", "https" -> HTTP.mask();
+            case "socks4" -> SOCKS4.mask();
+            case "socks5" -> SOCKS5.mask();
+            default -> ALL;
+        };
+    }
+}
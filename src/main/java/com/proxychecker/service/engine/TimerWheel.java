@@ -0,0 +1,101 @@
+package com.proxychecker.service.engine;
+
+import java.util.function.Consumer;
+
+/**
+ * Хешированное колесо таймеров для таймаутов подключения.
+ * <p>
+ * Не потокобезопасно: все операции выполняются в потоке селектора.
+ * Постановка и отмена таймаута — O(1), истечение — O(число просроченных записей).
+ */
+final class TimerWheel<T extends TimerWheel.Entry> {
+
+    /**
+     * Запись колеса. Связный список внутри корзины — интрузивный, без дополнительных аллокаций.
+     */
+    abstract static class Entry {
+        Entry prev;
+        Entry next;
+        long remainingRounds;
+        int bucket;
+        boolean scheduled;
+    }
+
+    private final Entry[] buckets;
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+    private long currentTick; // Следующий необработанный тик
+
+    TimerWheel( int wheelSize, long tickNanos, long startNanos ) {
+        if( Integer.bitCount( wheelSize ) != 1 ) {
+            throw new IllegalArgumentException( "Wheel size must be a power of two: " + wheelSize );
+        }
+        this.buckets = new Entry[wheelSize];
+        this.mask = wheelSize - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+    }
+
+    // Ставит запись в колесо; срабатывание — не раньше deadlineNanos, с точностью до тика
+    void schedule( T entry, long deadlineNanos ) {
+        if( entry.scheduled ) {
+            cancel( entry );
+        }
+        // Округление вверх гарантирует, что запись не истечет раньше срока
+        long tick = Math.max( ceilDiv( deadlineNanos - startNanos, tickNanos ), currentTick );
+        entry.remainingRounds = ( tick - currentTick ) / buckets.length;
+
+        int index = (int) ( tick & mask );
+        entry.bucket = index;
+        entry.prev = null;
+        entry.next = buckets[index];
+        if( entry.next != null ) {
+            entry.next.prev = entry;
+        }
+        buckets[index] = entry;
+        entry.scheduled = true;
+    }
+
+    void cancel( T entry ) {
+        if( ! entry.scheduled ) {
+            return;
+        }
+        if( entry.prev != null ) {
+            entry.prev.next = entry.next;
+        } else {
+            buckets[entry.bucket] = entry.next;
+        }
+        if( entry.next != null ) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.scheduled = false;
+    }
+
+    // Продвигает колесо до момента nowNanos и отдает просроченные записи
+    @SuppressWarnings( "unchecked" )
+    void expire( long nowNanos, Consumer<T> onExpire ) {
+        long targetTick = ( nowNanos - startNanos ) / tickNanos;
+        while( currentTick <= targetTick ) {
+            int index = (int) ( currentTick & mask );
+            Entry entry = buckets[index];
+            while( entry != null ) {
+                Entry next = entry.next;
+                if( entry.remainingRounds > 0 ) {
+                    entry.remainingRounds--;
+                } else {
+                    cancel( (T) entry );
+                    onExpire.accept( (T) entry );
+                }
+                entry = next;
+            }
+            currentTick++;
+        }
+    }
+
+    private static long ceilDiv( long x, long y ) {
+        return x <= 0 ? 0 : ( x + y - 1 ) / y;
+    }
+}
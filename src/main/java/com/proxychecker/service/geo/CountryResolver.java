@@ -0,0 +1,13 @@
+package com.proxychecker.service.geo;
+
+/**
+ * Источник стран по IPv4-адресу, отвечающий без обращения к сети.
+ */
+public interface CountryResolver {
+
+    /**
+     * @param address - IPv4-адрес, упакованный в {@code int}
+     * @return двухбуквенный код страны или {@code null}, если адрес неизвестен
+     */
+    String resolve( int address );
+}
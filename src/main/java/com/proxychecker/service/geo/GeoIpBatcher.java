@@ -0,0 +1,192 @@
+package com.proxychecker.service.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.proxychecker.constants.AppConstants.COUNTRY_UNKNOWN;
+import static com.proxychecker.constants.AppConstants.GEOIP_TIMEOUT_MILLIS;
+
+/**
+ * Пакетные запросы стран в geojs.
+ * <p>
+ * Адреса копятся до {@code maxBatchSize} штук или до истечения окна {@code windowMillis}
+ * с момента первого адреса пакета, после чего уходят одним запросом
+ * {@code country.json?ip=a,b,c}. Каждый ожидающий получает свой фьючерс. Запрос ограничен
+ * {@code timeoutMillis}: пакет, на который geojs не ответил, завершается {@code COUNTRY_UNKNOWN},
+ * как и пакет, запрос которого не удалось собрать.
+ */
+public class GeoIpBatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger( GeoIpBatcher.class );
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client;
+    private final String countryUrl;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final Duration timeout;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder requests = new LongAdder();
+
+    private Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+    private long batchId; // Номер текущего пакета, чтобы таймер не отправил следующий пакет раньше времени
+
+    /**
+     * @param client       - HTTP клиент
+     * @param baseUrl      - адрес geojs, например {@code https://get.geojs.io/}
+     * @param maxBatchSize - максимальное число адресов в одном запросе
+     * @param windowMillis - сколько ждать наполнения пакета
+     */
+    public GeoIpBatcher( HttpClient client, String baseUrl, int maxBatchSize, long windowMillis ) {
+        this( client, baseUrl, maxBatchSize, windowMillis, GEOIP_TIMEOUT_MILLIS );
+    }
+
+    /**
+     * @param timeoutMillis - сколько ждать ответа geojs на пакет
+     */
+    public GeoIpBatcher( HttpClient client, String baseUrl, int maxBatchSize, long windowMillis, long timeoutMillis ) {
+        if( maxBatchSize <= 0 ) {
+            throw new IllegalArgumentException( "Batch size must be positive: " + maxBatchSize );
+        }
+        this.client = client;
+        this.countryUrl = baseUrl + "v1/ip/country.json";
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.timeout = Duration.ofMillis( timeoutMillis );
+        this.scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "geoip-batcher" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * @param ip - IP адрес
+     * @return код страны или {@code COUNTRY_UNKNOWN}; фьючерс не завершается исключением
+     */
+    public CompletableFuture<String> lookup( String ip ) {
+        Map<String, CompletableFuture<String>> ready = null;
+        CompletableFuture<String> future;
+        synchronized( this ) {
+            future = pending.get( ip );
+            if( future != null ) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put( ip, future );
+            if( pending.size() >= maxBatchSize ) {
+                ready = drain();
+            } else if( pending.size() == 1 ) {
+                final long id = batchId;
+                scheduler.schedule( () -> flush( id ), windowMillis, TimeUnit.MILLISECONDS );
+            }
+        }
+        if( ready != null ) {
+            send( ready );
+        }
+        return future;
+    }
+
+    // Количество отправленных HTTP-запросов
+    public long requests() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        Map<String, CompletableFuture<String>> ready;
+        synchronized( this ) {
+            ready = drain();
+        }
+        if( ! ready.isEmpty() ) {
+            send( ready );
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void flush( long id ) {
+        Map<String, CompletableFuture<String>> ready;
+        synchronized( this ) {
+            if( id != batchId || pending.isEmpty() ) {
+                return; // Пакет уже отправлен по размеру
+            }
+            ready = drain();
+        }
+        send( ready );
+    }
+
+    private Map<String, CompletableFuture<String>> drain() {
+        Map<String, CompletableFuture<String>> ready = pending;
+        pending = new LinkedHashMap<>();
+        batchId++;
+        return ready;
+    }
+
+    private void send( Map<String, CompletableFuture<String>> batch ) {
+        final CompletableFuture<HttpResponse<String>> response;
+        try {
+            final StringJoiner ips = new StringJoiner( "," );
+            batch.keySet().forEach( ip -> ips.add( URLEncoder.encode( ip, StandardCharsets.UTF_8 ) ) );
+            final HttpRequest request = HttpRequest.newBuilder()
+                    .uri( URI.create( countryUrl + "?ip=" + ips ) )
+                    .timeout( timeout )
+                    .build();
+            requests.increment();
+            response = client.sendAsync( request, HttpResponse.BodyHandlers.ofString() );
+        } catch( RuntimeException e ) {
+            // Ожидающие пакета не должны зависнуть из-за запроса, который не удалось даже отправить
+            logger.error( "Unable to request countries for {} IPs: {}", batch.size(), e.toString() );
+            complete( batch, Map.of() );
+            return;
+        }
+
+        response.thenApply( reply -> parseCountries( reply.body() ) )
+                .exceptionally( e -> {
+                    logger.error( "Error while getting countries for {} IPs: {}", batch.size(), e.getMessage() );
+                    return Map.of();
+                } )
+                .thenAccept( countries -> complete( batch, countries ) );
+    }
+
+    private static void complete( Map<String, CompletableFuture<String>> batch, Map<String, String> countries ) {
+        batch.forEach( ( ip, future ) -> future.complete( countries.getOrDefault( ip, COUNTRY_UNKNOWN ) ) );
+    }
+
+    // Для одного адреса geojs возвращает объект, для нескольких — массив объектов; видимость пакета — для бенчмарков
+    Map<String, String> parseCountries( String body ) {
+        try {
+            JsonNode root = objectMapper.readTree( body );
+            Map<String, String> countries = new HashMap<>();
+            for( JsonNode node : root.isArray() ? root : objectMapper.createArrayNode().add( root ) ) {
+                String ip = node.path( "ip" ).asText( null );
+                String country = node.path( "country" ).asText( null );
+                if( ip != null && country != null && ! country.isBlank() ) {
+                    countries.put( ip, country );
+                }
+            }
+            return countries;
+        } catch( Exception e ) {
+            logger.error( "Error while parsing countries: {}", e.getMessage() );
+            return Map.of();
+        }
+    }
+}
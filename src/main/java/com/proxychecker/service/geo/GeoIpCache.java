@@ -0,0 +1,224 @@
+package com.proxychecker.service.geo;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограниченный кеш стран по IPv4-адресу с вытеснением по TTL и LRU.
+ * <p>
+ * Ключ — адрес, упакованный в {@code int}: индекс — открытая адресация на массиве,
+ * порядок LRU — двусвязный список на массивах индексов, так что на попадание
+ * не создается ни одного объекта.
+ */
+public class GeoIpCache {
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    // Записи
+    private final int[] keys;
+    private final String[] values;
+    private final long[] expiresAt;
+    private final int[] prev;
+    private final int[] next;
+
+    // Индекс: номер записи + 1, 0 — пустая ячейка
+    private final int[] table;
+    private final int mask;
+
+    private int head = NONE; // Самая свежая запись
+    private int tail = NONE; // Самая старая запись
+    private int freeHead = NONE; // Освобожденные записи, связанные через next
+    private int allocated;
+    private int size;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public GeoIpCache( int capacity, long ttlNanos ) {
+        this( capacity, ttlNanos, System::nanoTime );
+    }
+
+    GeoIpCache( int capacity, long ttlNanos, LongSupplier clock ) {
+        if( capacity <= 0 ) {
+            throw new IllegalArgumentException( "Cache capacity must be positive: " + capacity );
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+        this.keys = new int[capacity];
+        this.values = new String[capacity];
+        this.expiresAt = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        // Заполненность индекса не больше 50%
+        this.table = new int[Integer.highestOneBit( capacity ) << 2];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * @return код страны или {@code null}, если адреса нет в кеше или запись устарела
+     */
+    public synchronized String get( int address ) {
+        int entry = find( address );
+        if( entry == NONE ) {
+            misses++;
+            return null;
+        }
+        if( clock.getAsLong() - expiresAt[entry] > 0 ) {
+            remove( entry );
+            evictions++;
+            misses++;
+            return null;
+        }
+        moveToHead( entry );
+        hits++;
+        return values[entry];
+    }
+
+    public synchronized void put( int address, String country ) {
+        final long expires = clock.getAsLong() + ttlNanos;
+        int entry = find( address );
+        if( entry != NONE ) {
+            values[entry] = country;
+            expiresAt[entry] = expires;
+            moveToHead( entry );
+            return;
+        }
+
+        if( size == capacity ) {
+            remove( tail );
+            evictions++;
+        }
+        entry = allocate();
+        keys[entry] = address;
+        values[entry] = country;
+        expiresAt[entry] = expires;
+        linkHead( entry );
+        insertIndex( address, entry );
+        size++;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill( table, 0 );
+        Arrays.fill( values, null );
+        head = tail = freeHead = NONE;
+        allocated = 0;
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    private int allocate() {
+        if( freeHead != NONE ) {
+            int entry = freeHead;
+            freeHead = next[entry];
+            return entry;
+        }
+        return allocated++;
+    }
+
+    private void remove( int entry ) {
+        removeIndex( keys[entry] );
+        unlink( entry );
+        values[entry] = null;
+        next[entry] = freeHead;
+        freeHead = entry;
+        size--;
+    }
+
+    // ----- LRU-список -----
+
+    private void moveToHead( int entry ) {
+        if( entry != head ) {
+            unlink( entry );
+            linkHead( entry );
+        }
+    }
+
+    private void linkHead( int entry ) {
+        prev[entry] = NONE;
+        next[entry] = head;
+        if( head != NONE ) {
+            prev[head] = entry;
+        }
+        head = entry;
+        if( tail == NONE ) {
+            tail = entry;
+        }
+    }
+
+    private void unlink( int entry ) {
+        if( prev[entry] != NONE ) {
+            next[prev[entry]] = next[entry];
+        } else {
+            head = next[entry];
+        }
+        if( next[entry] != NONE ) {
+            prev[next[entry]] = prev[entry];
+        } else {
+            tail = prev[entry];
+        }
+    }
+
+    // ----- Индекс с линейным пробированием -----
+
+    private int find( int address ) {
+        for( int slot = hash( address ); table[slot] != 0; slot = ( slot + 1 ) & mask ) {
+            int entry = table[slot] - 1;
+            if( keys[entry] == address ) {
+                return entry;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertIndex( int address, int entry ) {
+        int slot = hash( address );
+        while( table[slot] != 0 ) {
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    // Удаление со сдвигом назад, без надгробий
+    private void removeIndex( int address ) {
+        int hole = hash( address );
+        while( keys[table[hole] - 1] != address ) {
+            hole = ( hole + 1 ) & mask;
+        }
+        table[hole] = 0;
+        for( int slot = ( hole + 1 ) & mask; table[slot] != 0; slot = ( slot + 1 ) & mask ) {
+            int home = hash( keys[table[slot] - 1] );
+            // Запись можно сдвинуть в дыру, если дыра лежит между ее домашней ячейкой и текущей
+            if( ( ( hole - home ) & mask ) < ( ( slot - home ) & mask ) ) {
+                table[hole] = table[slot];
+                table[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private int hash( int address ) {
+        int h = address * 0x9E3779B9;
+        return ( h ^ ( h >>> 16 ) ) & mask;
+    }
+}
@@ -0,0 +1,117 @@
+package com.proxychecker.service.geo;
+
+import com.proxychecker.dto.GeoIpCacheStatsDto;
+import com.proxychecker.util.Ipv4;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.proxychecker.constants.AppConstants.COUNTRY_UNKNOWN;
+import static com.proxychecker.constants.AppConstants.GEOJS_API_URL;
+
+/**
+ * Определение страны по IP с кешем и объединением одновременных запросов.
+ * <p>
+ * Если задана локальная база диапазонов, адрес сначала ищется в ней; geojs остается
+ * запасным вариантом. Одновременные запросы одного и того же адреса в geojs получают
+ * один общий фьючерс, а разные адреса собираются в пакетные запросы {@link GeoIpBatcher}.
+ */
+@Service
+public class GeoIpService {
+
+    private static final CompletableFuture<String> UNKNOWN = CompletableFuture.completedFuture( COUNTRY_UNKNOWN );
+
+    private final GeoIpBatcher batcher;
+    private final GeoIpCache cache;
+    private final CountryResolver localResolver;
+    private final boolean httpFallback;
+    private final ConcurrentHashMap<Integer, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public GeoIpService( @Value( "${proxy.checker.geoip.cache.capacity:65536}" ) int cacheCapacity,
+                         @Value( "${proxy.checker.geoip.cache.ttl-minutes:1440}" ) long cacheTtlMinutes,
+                         @Value( "${proxy.checker.geoip.database:}" ) String database,
+                         @Value( "${proxy.checker.geoip.http-fallback:true}" ) boolean httpFallback,
+                         @Value( "${proxy.checker.geoip.url:" + GEOJS_API_URL + "}" ) String geoJsUrl,
+                         @Value( "${proxy.checker.geoip.batch.size:100}" ) int batchSize,
+                         @Value( "${proxy.checker.geoip.batch.window-millis:50}" ) long batchWindowMillis ) {
+        this.batcher = new GeoIpBatcher( HttpClient.newHttpClient(), geoJsUrl, batchSize, batchWindowMillis );
+        this.cache = new GeoIpCache( cacheCapacity, TimeUnit.MINUTES.toNanos( cacheTtlMinutes ) );
+        this.localResolver = database.isBlank() ? null : IpRangeCountryResolver.open( Path.of( database ) );
+        this.httpFallback = httpFallback;
+    }
+
+    /**
+     * @param ip - IP адрес прокси
+     * @return код страны или {@code COUNTRY_UNKNOWN}; фьючерс не завершается исключением
+     */
+    public CompletableFuture<String> getCountry( String ip ) {
+        final long parsed = Ipv4.parse( ip );
+        if( parsed == Ipv4.INVALID ) {
+            return httpFallback ? batcher.lookup( ip ) : UNKNOWN; // Не IPv4 — без кеша
+        }
+
+        return getCountry( (int) parsed );
+    }
+
+    /**
+     * @param address - IPv4-адрес, упакованный в {@code int}
+     * @return код страны или {@code COUNTRY_UNKNOWN}; фьючерс не завершается исключением
+     */
+    public CompletableFuture<String> getCountry( int address ) {
+        if( localResolver != null ) {
+            final String country = localResolver.resolve( address );
+            if( country != null ) {
+                return CompletableFuture.completedFuture( country );
+            }
+        }
+        if( ! httpFallback ) {
+            return UNKNOWN;
+        }
+
+        final String cached = cache.get( address );
+        if( cached != null ) {
+            return CompletableFuture.completedFuture( cached );
+        }
+
+        final CompletableFuture<String> created = new CompletableFuture<>();
+        final CompletableFuture<String> existing = inFlight.putIfAbsent( address, created );
+        if( existing != null ) {
+            coalesced.increment();
+            return existing;
+        }
+
+        // Строка адреса нужна только для запроса в geojs
+        batcher.lookup( Ipv4.toString( address ) ).thenAccept( country -> {
+            // Ошибки и неизвестные адреса не кешируем, чтобы повторить запрос в следующий раз
+            if( ! COUNTRY_UNKNOWN.equalsIgnoreCase( country ) ) {
+                cache.put( address, country );
+            }
+            inFlight.remove( address, created );
+            created.complete( country );
+        } );
+        return created;
+    }
+
+    public GeoIpCacheStatsDto getCacheStats() {
+        return new GeoIpCacheStatsDto()
+                .setSize( cache.size() )
+                .setHits( cache.hits() )
+                .setMisses( cache.misses() )
+                .setEvictions( cache.evictions() )
+                .setCoalesced( coalesced.sum() )
+                .setRemoteRequests( batcher.requests() );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batcher.close();
+    }
+}
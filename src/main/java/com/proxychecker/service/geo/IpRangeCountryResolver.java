@@ -0,0 +1,185 @@
+package com.proxychecker.service.geo;
+
+import com.proxychecker.util.CountryCodes;
+import com.proxychecker.util.Ipv4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Определение страны по локальной таблице диапазонов IPv4.
+ * <p>
+ * Исходный CSV ({@code start,end,CC}, адреса — в точечной записи или числом) компилируется
+ * в бинарный файл из трех колонок: начала диапазонов, концы диапазонов и коды стран.
+ * Файл отображается в память, поиск — бинарный по колонке начал, без аллокаций.
+ */
+public class IpRangeCountryResolver implements CountryResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger( IpRangeCountryResolver.class );
+
+    private static final int MAGIC = 0x49505243; // "IPRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final String COMPILED_SUFFIX = ".bin";
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int endsOffset;
+    private final int codesOffset;
+
+    private IpRangeCountryResolver( ByteBuffer buffer ) {
+        this.buffer = buffer.order( ByteOrder.BIG_ENDIAN );
+        if( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION ) {
+            throw new IllegalArgumentException( "Not a compiled IP range database" );
+        }
+        this.count = buffer.getInt( 8 );
+        this.endsOffset = HEADER_SIZE + count * Integer.BYTES;
+        this.codesOffset = endsOffset + count * Integer.BYTES;
+    }
+
+    /**
+     * Открывает базу: CSV компилируется рядом в {@code .bin}, если бинарного файла нет или он устарел.
+     *
+     * @param database - путь к CSV или к уже скомпилированному {@code .bin}
+     */
+    public static IpRangeCountryResolver open( Path database ) {
+        try {
+            Path compiled = database;
+            if( ! database.toString().endsWith( COMPILED_SUFFIX ) ) {
+                compiled = database.resolveSibling( database.getFileName() + COMPILED_SUFFIX );
+                if( Files.notExists( compiled )
+                        || Files.getLastModifiedTime( compiled ).compareTo( Files.getLastModifiedTime( database ) ) < 0 ) {
+                    compile( database, compiled );
+                }
+            }
+
+            try( FileChannel channel = FileChannel.open( compiled, StandardOpenOption.READ ) ) {
+                IpRangeCountryResolver resolver = new IpRangeCountryResolver( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+                logger.info( "Loaded {} IP ranges from {}", resolver.count, compiled );
+                return resolver;
+            }
+        } catch( IOException e ) {
+            throw new UncheckedIOException( "Unable to open IP range database " + database, e );
+        }
+    }
+
+    /**
+     * Компилирует CSV с диапазонами в бинарный файл, отсортированный по началу диапазона.
+     * Строки, которые не удалось разобрать (заголовок, IPv6, комментарии), пропускаются.
+     */
+    public static int compile( Path csv, Path compiled ) throws IOException {
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        short[] codes = new short[1024];
+        int count = 0;
+
+        try( BufferedReader reader = Files.newBufferedReader( csv, StandardCharsets.UTF_8 ) ) {
+            String line;
+            while( ( line = reader.readLine() ) != null ) {
+                String[] columns = line.split( "," );
+                if( columns.length < 3 ) {
+                    continue;
+                }
+                long start = parseAddress( columns[0] );
+                long end = parseAddress( columns[1] );
+                int code = CountryCodes.encode( unquote( columns[2] ) );
+                if( start < 0 || end < start || code < 0 ) {
+                    continue;
+                }
+                if( count == starts.length ) {
+                    starts = Arrays.copyOf( starts, count * 2 );
+                    ends = Arrays.copyOf( ends, count * 2 );
+                    codes = Arrays.copyOf( codes, count * 2 );
+                }
+                starts[count] = (int) start;
+                ends[count] = (int) end;
+                codes[count] = (short) code;
+                count++;
+            }
+        }
+
+        // Сортировка по беззнаковому началу: старшие 32 бита — начало с инвертированным знаковым битом,
+        // чтобы знаковое сравнение long совпало с беззнаковым сравнением адресов; младшие — номер строки
+        long[] order = new long[count];
+        for( int i = 0; i < count; i++ ) {
+            order[i] = ( (long) ( starts[i] ^ Integer.MIN_VALUE ) << 32 ) | i;
+        }
+        Arrays.sort( order );
+
+        ByteBuffer out = ByteBuffer.allocate( HEADER_SIZE + count * ( 2 * Integer.BYTES + Short.BYTES ) );
+        out.putInt( MAGIC ).putInt( VERSION ).putInt( count );
+        for( long entry : order ) {
+            out.putInt( starts[(int) entry] );
+        }
+        for( long entry : order ) {
+            out.putInt( ends[(int) entry] );
+        }
+        for( long entry : order ) {
+            out.putShort( codes[(int) entry] );
+        }
+
+        // Запись во временный файл и атомарная замена, чтобы не отобразить недописанный файл
+        Path temp = compiled.resolveSibling( compiled.getFileName() + ".tmp" );
+        Files.write( temp, out.array() );
+        Files.move( temp, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        return count;
+    }
+
+    @Override
+    public String resolve( int address ) {
+        // Последний диапазон, начало которого не больше адреса
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while( low <= high ) {
+            int mid = ( low + high ) >>> 1;
+            if( Integer.compareUnsigned( buffer.getInt( HEADER_SIZE + mid * Integer.BYTES ), address ) <= 0 ) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if( found < 0 || Integer.compareUnsigned( address, buffer.getInt( endsOffset + found * Integer.BYTES ) ) > 0 ) {
+            return null;
+        }
+        return CountryCodes.decode( buffer.getShort( codesOffset + found * Short.BYTES ) );
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private static long parseAddress( String column ) {
+        String value = unquote( column );
+        if( value.indexOf( '.' ) >= 0 ) {
+            return Ipv4.parse( value );
+        }
+        try {
+            long address = Long.parseLong( value );
+            return address >= 0 && address <= 0xFFFFFFFFL ? address : Ipv4.INVALID;
+        } catch( NumberFormatException e ) {
+            return Ipv4.INVALID;
+        }
+    }
+
+    private static String unquote( String column ) {
+        String value = column.trim();
+        if( value.length() >= 2 && value.charAt( 0 ) == '"' && value.charAt( value.length() - 1 ) == '"' ) {
+            return value.substring( 1, value.length() - 1 );
+        }
+        return value;
+    }
+}
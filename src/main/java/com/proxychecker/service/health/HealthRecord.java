@@ -0,0 +1,20 @@
+package com.proxychecker.service.health;
+
+import com.proxychecker.service.engine.ProxyProtocol;
+
+/**
+ * Последнее известное состояние прокси.
+ *
+ * @param endpoint      - адрес и порт, упакованные {@link com.proxychecker.util.Endpoints#pack}
+ * @param checkedAt     - время последней проверки, мс от эпохи
+ * @param latencyMillis - время подключения при последней успешной проверке
+ * @param streak        - серия: больше нуля — успешные проверки подряд, меньше нуля — неудачные
+ * @param country       - код страны или {@code null}, если неизвестна
+ * @param protocol      - протокол, подтвержденный рукопожатием, или {@code null}
+ */
+public record HealthRecord( long endpoint, long checkedAt, int latencyMillis, int streak, String country, ProxyProtocol protocol ) {
+
+    public boolean isAlive() {
+        return streak > 0;
+    }
+}
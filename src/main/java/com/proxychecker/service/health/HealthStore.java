@@ -0,0 +1,371 @@
+package com.proxychecker.service.health;
+
+import com.proxychecker.dto.HealthStoreStatsDto;
+import com.proxychecker.service.engine.ProxyProtocol;
+import com.proxychecker.util.CountryCodes;
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.LongIntHashMap;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Хранилище состояния прокси между проверками.
+ * <p>
+ * Каждая проверка дописывается в журнал записью фиксированной длины; последнее состояние
+ * каждого адреса держится в памяти в колонках-массивах с индексом по упакованному адресу.
+ * При запуске журнал отображается в память и проигрывается последовательно, после чего
+ * сжимается, если в нем слишком много устаревших записей. Недописанная запись в конце
+ * журнала (падение посреди записи) отбрасывается.
+ * <p>
+ * По состоянию решается, когда адрес проверять снова: живые — через постоянный интервал,
+ * мертвые — с экспоненциально растущей паузой.
+ */
+@Component
+public class HealthStore {
+
+    private static final Logger logger = LoggerFactory.getLogger( HealthStore.class );
+
+    private static final int MAGIC = 0x50484c47; // "PHLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // endpoint(8) checkedAt(8) latency(4) streak(4) country(2) protocol(2) резерв(4)
+    private static final int RECORD_SIZE = 32;
+    private static final int WRITE_BUFFER_RECORDS = 256;
+    private static final int NONE = -1;
+    // Журнал сжимается, когда устаревших записей больше, чем живых, в это число раз
+    private static final int COMPACT_RATIO = 4;
+    private static final int COMPACT_MIN_RECORDS = 1 << 16;
+
+    private final Path path;
+    private final long aliveIntervalMillis;
+    private final long deadIntervalMillis;
+    private final long maxBackoffMillis;
+    private final LongSupplier clock;
+
+    // Последнее состояние каждого адреса
+    private final LongIntHashMap index = new LongIntHashMap( 1 << 16, NONE );
+    private long[] endpoints = new long[1024];
+    private long[] checkedAt = new long[1024];
+    private int[] latency = new int[1024];
+    private int[] streak = new int[1024];
+    private short[] country = new short[1024];
+    private byte[] protocol = new byte[1024]; // ProxyProtocol.code(), 0 — неизвестен
+    private int size;
+
+    private FileChannel log;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect( WRITE_BUFFER_RECORDS * RECORD_SIZE );
+    private long logRecords;
+
+    /**
+     * @param path                - путь к журналу; пусто — состояние только в памяти
+     * @param aliveIntervalMinutes - через сколько минут перепроверять живой прокси
+     * @param deadIntervalMinutes  - пауза после первой неудачи, удваивается с каждой следующей
+     * @param maxBackoffMinutes    - предел паузы для мертвых прокси
+     */
+    @Autowired
+    public HealthStore( @Value( "${proxy.checker.health.store:}" ) String path,
+                        @Value( "${proxy.checker.health.alive-interval-minutes:10}" ) long aliveIntervalMinutes,
+                        @Value( "${proxy.checker.health.dead-interval-minutes:10}" ) long deadIntervalMinutes,
+                        @Value( "${proxy.checker.health.max-backoff-minutes:1440}" ) long maxBackoffMinutes ) {
+        this( path.isBlank() ? null : Path.of( path ),
+                TimeUnit.MINUTES.toMillis( aliveIntervalMinutes ),
+                TimeUnit.MINUTES.toMillis( deadIntervalMinutes ),
+                TimeUnit.MINUTES.toMillis( maxBackoffMinutes ),
+                System::currentTimeMillis );
+    }
+
+    HealthStore( Path path, long aliveIntervalMillis, long deadIntervalMillis, long maxBackoffMillis, LongSupplier clock ) {
+        this.path = path;
+        this.aliveIntervalMillis = aliveIntervalMillis;
+        this.deadIntervalMillis = deadIntervalMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.clock = clock;
+        if( path != null ) {
+            open();
+        }
+    }
+
+    public synchronized void recordSuccess( int address, int port, long latencyMillis, String countryCode, ProxyProtocol verified ) {
+        final int entry = entry( Endpoints.pack( address, port ) );
+        streak[entry] = streak[entry] > 0 ? streak[entry] + 1 : 1;
+        latency[entry] = (int) Math.min( latencyMillis, Integer.MAX_VALUE );
+        country[entry] = (short) CountryCodes.encode( countryCode );
+        protocol[entry] = (byte) ( verified == null ? 0 : verified.code() );
+        checkedAt[entry] = clock.getAsLong();
+        append( entry );
+    }
+
+    public synchronized void recordFailure( int address, int port ) {
+        final int entry = entry( Endpoints.pack( address, port ) );
+        streak[entry] = streak[entry] < 0 ? streak[entry] - 1 : -1;
+        checkedAt[entry] = clock.getAsLong();
+        append( entry );
+    }
+
+    /**
+     * @return последнее состояние или {@code null}, если адрес еще не проверялся
+     */
+    public synchronized HealthRecord get( int address, int port ) {
+        final int entry = index.get( Endpoints.pack( address, port ) );
+        return entry == NONE ? null : toRecord( entry );
+    }
+
+    // Пора ли проверять адрес снова
+    public boolean isDue( HealthRecord record ) {
+        return nextCheckAt( record.checkedAt(), record.streak() ) <= clock.getAsLong();
+    }
+
+    /**
+     * Адреса, которые пора перепроверить: сначала живые, затем мертвые,
+     * внутри группы — дольше всех ожидающие.
+     *
+     * @param limit - максимальное число адресов
+     */
+    public synchronized long[] dueEndpoints( int limit ) {
+        final long now = clock.getAsLong();
+        long[] order = new long[Math.min( size, 1024 )];
+        int due = 0;
+        for( int entry = 0; entry < size; entry++ ) {
+            final long next = nextCheckAt( checkedAt[entry], streak[entry] );
+            if( next > now ) {
+                continue;
+            }
+            if( due == order.length ) {
+                order = Arrays.copyOf( order, due * 2 );
+            }
+            // Ключ сортировки: группа (живые раньше), секунда плановой проверки, номер записи
+            final long group = streak[entry] > 0 ? 0 : 1;
+            order[due++] = ( group << 62 ) | ( ( next / 1000 ) & 0x7FFFFFFFL ) << 31 | entry;
+        }
+        Arrays.sort( order, 0, due );
+
+        final long[] result = new long[Math.min( due, limit )];
+        for( int i = 0; i < result.length; i++ ) {
+            result[i] = endpoints[(int) ( order[i] & 0x7FFFFFFFL )];
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int alive() {
+        int alive = 0;
+        for( int entry = 0; entry < size; entry++ ) {
+            if( streak[entry] > 0 ) {
+                alive++;
+            }
+        }
+        return alive;
+    }
+
+    public synchronized HealthStoreStatsDto getStats() {
+        return new HealthStoreStatsDto()
+                .setTracked( size )
+                .setAlive( alive() )
+                .setDue( dueEndpoints( Integer.MAX_VALUE ).length )
+                .setLogRecords( logRecords );
+    }
+
+    public synchronized long logRecords() {
+        return logRecords;
+    }
+
+    // Сбрасывает накопленные записи в журнал; вызывается по окончании проверки
+    public synchronized void flush() {
+        if( log == null ) {
+            return;
+        }
+        try {
+            writeBuffer.flip();
+            while( writeBuffer.hasRemaining() ) {
+                log.write( writeBuffer );
+            }
+            writeBuffer.clear();
+            if( logRecords > COMPACT_MIN_RECORDS && logRecords > (long) size * COMPACT_RATIO ) {
+                compact();
+            }
+        } catch( IOException e ) {
+            throw new UncheckedIOException( "Unable to write health log " + path, e );
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if( log == null ) {
+            return;
+        }
+        flush();
+        try {
+            log.close();
+        } catch( IOException e ) {
+            logger.warn( "Unable to close health log {}: {}", path, e.getMessage() );
+        }
+        log = null;
+    }
+
+    private long nextCheckAt( long checked, int entryStreak ) {
+        if( entryStreak > 0 ) {
+            return checked + aliveIntervalMillis;
+        }
+        // Пауза удваивается с каждой неудачей подряд
+        final int doublings = Math.min( -entryStreak - 1, 30 );
+        return checked + Math.min( maxBackoffMillis, deadIntervalMillis << doublings );
+    }
+
+    private HealthRecord toRecord( int entry ) {
+        return new HealthRecord( endpoints[entry], checkedAt[entry], latency[entry], streak[entry],
+                CountryCodes.decode( country[entry] ), ProxyProtocol.fromCode( protocol[entry] ) );
+    }
+
+    private int entry( long endpoint ) {
+        int entry = index.get( endpoint );
+        if( entry != NONE ) {
+            return entry;
+        }
+        if( size == endpoints.length ) {
+            final int capacity = size * 2;
+            endpoints = Arrays.copyOf( endpoints, capacity );
+            checkedAt = Arrays.copyOf( checkedAt, capacity );
+            latency = Arrays.copyOf( latency, capacity );
+            streak = Arrays.copyOf( streak, capacity );
+            country = Arrays.copyOf( country, capacity );
+            protocol = Arrays.copyOf( protocol, capacity );
+        }
+        entry = size++;
+        endpoints[entry] = endpoint;
+        country[entry] = CountryCodes.UNKNOWN;
+        index.put( endpoint, entry );
+        return entry;
+    }
+
+    // ----- Журнал -----
+
+    private void append( int entry ) {
+        if( log == null ) {
+            return;
+        }
+        if( ! writeBuffer.hasRemaining() ) {
+            flush();
+        }
+        writeRecord( writeBuffer, entry );
+        logRecords++;
+    }
+
+    private void writeRecord( ByteBuffer buffer, int entry ) {
+        buffer.putLong( endpoints[entry] )
+                .putLong( checkedAt[entry] )
+                .putInt( latency[entry] )
+                .putInt( streak[entry] )
+                .putShort( country[entry] )
+                .putShort( protocol[entry] )
+                .putInt( 0 );
+    }
+
+    private void open() {
+        try {
+            if( path.getParent() != null ) {
+                Files.createDirectories( path.getParent() );
+            }
+            final long validSize = Files.exists( path ) ? replay() : 0;
+            if( validSize == 0 ) {
+                writeLog( path );
+            } else if( logRecords > (long) size * 2 ) {
+                compact();
+            }
+
+            log = FileChannel.open( path, StandardOpenOption.WRITE );
+            if( validSize > 0 ) {
+                log.truncate( validSize ); // Отбрасываем недописанный хвост
+            }
+            log.position( log.size() );
+            logger.info( "Health store {}: {} proxies, {} log records", path, size, logRecords );
+        } catch( IOException e ) {
+            throw new UncheckedIOException( "Unable to open health log " + path, e );
+        }
+    }
+
+    // Проигрывает журнал и возвращает длину его целой части; 0 — журнал пуст или не распознан
+    private long replay() throws IOException {
+        try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            if( channel.size() < HEADER_SIZE ) {
+                return 0;
+            }
+            final MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            if( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION ) {
+                logger.warn( "Health log {} has unknown format, starting from scratch", path );
+                return 0;
+            }
+            final long records = ( channel.size() - HEADER_SIZE ) / RECORD_SIZE;
+            for( long i = 0; i < records; i++ ) {
+                final int offset = (int) ( HEADER_SIZE + i * RECORD_SIZE );
+                final int entry = entry( buffer.getLong( offset ) );
+                checkedAt[entry] = buffer.getLong( offset + 8 );
+                latency[entry] = buffer.getInt( offset + 16 );
+                streak[entry] = buffer.getInt( offset + 20 );
+                country[entry] = buffer.getShort( offset + 24 );
+                protocol[entry] = (byte) buffer.getShort( offset + 26 );
+            }
+            logRecords = records;
+            return HEADER_SIZE + records * RECORD_SIZE;
+        }
+    }
+
+    // Переписывает журнал, оставляя по одной записи на адрес
+    private void compact() throws IOException {
+        final long before = logRecords;
+        if( log != null ) {
+            log.close();
+        }
+        final Path temp = path.resolveSibling( path.getFileName() + ".tmp" );
+        writeLog( temp );
+        Files.move( temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        logRecords = size;
+        if( log != null ) {
+            log = FileChannel.open( path, StandardOpenOption.WRITE );
+            log.position( log.size() );
+        }
+        logger.info( "Health log {} compacted from {} to {} records", path, before, size );
+    }
+
+    private void writeLog( Path target ) throws IOException {
+        try( FileChannel channel = FileChannel.open( target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            final ByteBuffer buffer = ByteBuffer.allocate( WRITE_BUFFER_RECORDS * RECORD_SIZE );
+            buffer.putInt( MAGIC ).putInt( VERSION );
+            for( int entry = 0; entry < size; entry++ ) {
+                if( buffer.remaining() < RECORD_SIZE ) {
+                    drain( channel, buffer );
+                }
+                writeRecord( buffer, entry );
+            }
+            drain( channel, buffer );
+        }
+    }
+
+    private static void drain( FileChannel channel, ByteBuffer buffer ) throws IOException {
+        buffer.flip();
+        while( buffer.hasRemaining() ) {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+}
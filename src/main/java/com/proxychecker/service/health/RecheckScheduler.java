@@ -0,0 +1,55 @@
+package com.proxychecker.service.health;
+
+import com.proxychecker.service.ProxyCheckerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Фоновая перепроверка известных прокси.
+ * <p>
+ * Раз в интервал берет из {@link HealthStore} адреса, которым пора на проверку, —
+ * сначала живые, затем мертвые, чья пауза истекла, — и проверяет их без загрузки источников.
+ */
+@Component
+public class RecheckScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger( RecheckScheduler.class );
+
+    private final HealthStore healthStore;
+    private final ProxyCheckerService proxyCheckerService;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public RecheckScheduler( HealthStore healthStore,
+                             ProxyCheckerService proxyCheckerService,
+                             @Value( "${proxy.checker.health.recheck.enabled:true}" ) boolean enabled,
+                             @Value( "${proxy.checker.health.recheck.batch-size:5000}" ) int batchSize ) {
+        this.healthStore = healthStore;
+        this.proxyCheckerService = proxyCheckerService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled( initialDelayString = "${proxy.checker.health.recheck.interval-millis:60000}",
+            fixedDelayString = "${proxy.checker.health.recheck.interval-millis:60000}" )
+    public void recheck() {
+        if( ! enabled ) {
+            return;
+        }
+        final long[] due = healthStore.dueEndpoints( batchSize );
+        if( due.length == 0 ) {
+            return;
+        }
+        try {
+            final int working = proxyCheckerService.recheck( due );
+            logger.info( "Rechecked {} known proxies, {} working", due.length, working );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } catch( Exception e ) {
+            logger.error( "Error during proxy recheck: {}", e.getMessage() );
+        }
+    }
+}
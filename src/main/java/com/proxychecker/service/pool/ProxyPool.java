@@ -0,0 +1,171 @@
+package com.proxychecker.service.pool;
+
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.dto.ProxyPoolStatsDto;
+import com.proxychecker.service.result.ProxyResultSet;
+import com.proxychecker.util.Endpoints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.proxychecker.constants.AppConstants.PROXY_TYPE_ALL;
+
+/**
+ * Пул проверенных прокси, упорядоченных по задержке.
+ * <p>
+ * Каждый прокси лежит в четырех отсортированных множествах: по типу и стране, только по типу,
+ * только по стране и в общем. Выбор лучших {@code N} прокси под фильтр — взять начало одного
+ * множества, {@code O(log n + N)}; добавление и вытеснение — {@code O(log n)}.
+ * Обновление одного адреса сериализуется картой адресов, чтения идут без блокировок.
+ */
+@Component
+public class ProxyPool {
+
+    private static final String ANY = "*";
+    private static final Comparator<PoolEntry> BY_LATENCY = Comparator.comparingInt( PoolEntry::latencyMillis )
+            .thenComparingLong( PoolEntry::endpoint );
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Long, PoolEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<PoolEntry>> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<PoolEntry> all = set( key( ANY, ANY ) );
+    private final LongAdder added = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param maxSize - сколько прокси держать; при переполнении вытесняются самые медленные
+     */
+    public ProxyPool( @Value( "${proxy.checker.pool.max-size:5000}" ) int maxSize ) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Добавляет рабочий прокси или обновляет его задержку. {@link ProxyDto} создается, только если прокси попадает в пул:
+     * в заполненный пул не попадает прокси медленнее самого медленного
+     *
+     * @param endpoint      - адрес, упакованный {@link Endpoints#pack}
+     * @param latencyMillis - задержка последней проверки
+     * @param proxyType     - тип прокси
+     * @param country       - код страны
+     */
+    public void offer( long endpoint, int latencyMillis, String proxyType, String country ) {
+        if( entries.size() >= maxSize && ! entries.containsKey( endpoint ) ) {
+            final Iterator<PoolEntry> slowest = all.descendingIterator();
+            if( slowest.hasNext() && latencyMillis >= slowest.next().latencyMillis() ) {
+                return;
+            }
+        }
+        entries.compute( endpoint, ( key, previous ) -> {
+            if( previous != null ) {
+                unindex( previous );
+            } else {
+                added.increment();
+            }
+            final PoolEntry entry = new PoolEntry( endpoint, latencyMillis, ProxyResultSet.toDto( Endpoints.address( endpoint ),
+                    Endpoints.port( endpoint ), proxyType, (int) Math.min( latencyMillis * 1000L, Integer.MAX_VALUE ), country ) );
+            index( entry );
+            return entry;
+        } );
+
+        // Переполнение — вытесняем самые медленные
+        while( entries.size() > maxSize ) {
+            final Iterator<PoolEntry> slowest = all.descendingIterator();
+            if( ! slowest.hasNext() ) {
+                break;
+            }
+            evict( slowest.next().endpoint() );
+        }
+    }
+
+    /**
+     * Убирает прокси из пула, например после неудачной перепроверки
+     */
+    public void evict( long endpoint ) {
+        entries.computeIfPresent( endpoint, ( key, entry ) -> {
+            unindex( entry );
+            evicted.increment();
+            return null;
+        } );
+    }
+
+    /**
+     * Самые быстрые прокси под фильтр
+     *
+     * @param type    - тип прокси; {@code null}, пустая строка или {@code ALL} — любой
+     * @param country - код страны; {@code null}, пустая строка или {@code ALL} — любая
+     * @param limit   - сколько прокси вернуть
+     */
+    public List<ProxyDto> best( String type, String country, int limit ) {
+        final ConcurrentSkipListSet<PoolEntry> matching = index.get( key( normalize( type ), normalize( country ) ) );
+        if( matching == null || limit <= 0 ) {
+            return List.of();
+        }
+        final List<ProxyDto> best = new ArrayList<>( Math.min( limit, 64 ) );
+        for( PoolEntry entry : matching ) {
+            best.add( entry.proxy() );
+            if( best.size() == limit ) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    // Адреса всех прокси пула — для перепроверки
+    public long[] endpoints() {
+        return entries.keySet().stream().mapToLong( Long::longValue ).toArray();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public ProxyPoolStatsDto getStats() {
+        return new ProxyPoolStatsDto()
+                .setSize( entries.size() )
+                .setAdded( added.sum() )
+                .setEvicted( evicted.sum() );
+    }
+
+    private void index( PoolEntry entry ) {
+        final String type = normalize( entry.proxy().getProxyType() );
+        final String country = normalize( entry.proxy().getCountry() );
+        set( key( type, country ) ).add( entry );
+        set( key( type, ANY ) ).add( entry );
+        set( key( ANY, country ) ).add( entry );
+        all.add( entry );
+    }
+
+    private void unindex( PoolEntry entry ) {
+        final String type = normalize( entry.proxy().getProxyType() );
+        final String country = normalize( entry.proxy().getCountry() );
+        set( key( type, country ) ).remove( entry );
+        set( key( type, ANY ) ).remove( entry );
+        set( key( ANY, country ) ).remove( entry );
+        all.remove( entry );
+    }
+
+    private ConcurrentSkipListSet<PoolEntry> set( String key ) {
+        return index.computeIfAbsent( key, k -> new ConcurrentSkipListSet<>( BY_LATENCY ) );
+    }
+
+    private static String key( String type, String country ) {
+        return type + '|' + country;
+    }
+
+    private static String normalize( String value ) {
+        return value == null || value.isBlank() || PROXY_TYPE_ALL.equalsIgnoreCase( value )
+                ? ANY
+                : value.toUpperCase( Locale.ROOT );
+    }
+
+    private record PoolEntry( long endpoint, int latencyMillis, ProxyDto proxy ) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.proxychecker.service.pool;
+
+import com.proxychecker.service.ProxyCheckerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Фоновое обслуживание {@link ProxyPool}.
+ * <p>
+ * Раз в интервал перепроверяет все прокси пула — не прошедшие проверку вытесняются сразу, —
+ * и, если в пуле осталось меньше {@code min-size} прокси, пополняет его проверкой всех источников.
+ * Недавно проверенные рабочие адреса при этом берутся из журнала состояний, так что первое
+ * пополнение после запуска наполняет пул почти мгновенно.
+ */
+@Component
+public class ProxyPoolRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger( ProxyPoolRefresher.class );
+
+    private final ProxyPool proxyPool;
+    private final ProxyCheckerService proxyCheckerService;
+    private final boolean enabled;
+    private final int minSize;
+
+    public ProxyPoolRefresher( ProxyPool proxyPool,
+                               ProxyCheckerService proxyCheckerService,
+                               @Value( "${proxy.checker.pool.enabled:true}" ) boolean enabled,
+                               @Value( "${proxy.checker.pool.min-size:200}" ) int minSize ) {
+        this.proxyPool = proxyPool;
+        this.proxyCheckerService = proxyCheckerService;
+        this.enabled = enabled;
+        this.minSize = minSize;
+    }
+
+    @Scheduled( initialDelayString = "${proxy.checker.pool.refresh.initial-delay-millis:5000}",
+            fixedDelayString = "${proxy.checker.pool.refresh.interval-millis:60000}" )
+    public void refresh() {
+        if( ! enabled ) {
+            return;
+        }
+        try {
+            final long[] pooled = proxyPool.endpoints();
+            if( pooled.length > 0 ) {
+                final int working = proxyCheckerService.recheck( pooled );
+                logger.info( "Rechecked {} pooled proxies, {} still working", pooled.length, working );
+            }
+            if( proxyPool.size() < minSize ) {
+                proxyCheckerService.refillPool();
+                logger.info( "Refilled proxy pool: {} proxies", proxyPool.size() );
+            }
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } catch( Exception e ) {
+            logger.error( "Error during proxy pool refresh: {}", e.getMessage() );
+        }
+    }
+}
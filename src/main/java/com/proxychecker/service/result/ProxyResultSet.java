@@ -0,0 +1,360 @@
+package com.proxychecker.service.result;
+
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.util.CountryCodes;
+import com.proxychecker.util.Ipv4;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.proxychecker.constants.AppConstants.PROTOCOL_HTTP;
+import static com.proxychecker.constants.AppConstants.PROTOCOL_HTTPS;
+import static com.proxychecker.constants.AppConstants.PROTOCOL_SOCKS;
+import static com.proxychecker.constants.AppConstants.PROTOCOL_SOCKS4;
+import static com.proxychecker.constants.AppConstants.PROTOCOL_SOCKS5;
+
+/**
+ * Колоночный набор результатов проверки: адрес, порт, задержка в микросекундах,
+ * номер типа и номер страны лежат в примитивных массивах — около 13 байт на прокси вместо {@link ProxyDto}
+ * с тремя строками и {@link BigDecimal}. {@link ProxyDto} создаются только для запрошенной страницы.
+ * <p>
+ * Добавление синхронизировано, чтение идет без блокировок: размер публикуется после записи строки,
+ * а при росте массивы копируются, поэтому читатель всегда видит не меньше {@link #size()} строк.
+ * <p>
+ * Сортировка — по свойствам {@link ProxyDto}: {@code host}, {@code port}, {@code proxyType},
+ * {@code responseTime}, {@code country}; порядок строк для свойства кешируется до следующего добавления.
+ */
+public class ProxyResultSet {
+
+    public static final String SORT_HOST = "host";
+    public static final String SORT_PORT = "port";
+    public static final String SORT_TYPE = "proxyType";
+    public static final String SORT_RESPONSE_TIME = "responseTime";
+    public static final String SORT_COUNTRY = "country";
+
+    private static final List<String> SORT_PROPERTIES = List.of( SORT_HOST, SORT_PORT, SORT_TYPE, SORT_RESPONSE_TIME, SORT_COUNTRY );
+
+    // Номер типа — индекс в таблице; таблица упорядочена по алфавиту, чтобы сортировка по номеру совпала с сортировкой по имени
+    private static final String[] TYPES = { PROTOCOL_HTTP, PROTOCOL_HTTPS, PROTOCOL_SOCKS, PROTOCOL_SOCKS4, PROTOCOL_SOCKS5 };
+
+    private static final int MAGIC = 0x50525331; // "PRS1"
+    private static final int VERSION = 1;
+
+    private volatile Columns columns;
+    private volatile int size;
+    private volatile SortedRows sorted;
+
+    public ProxyResultSet() {
+        this( 1024 );
+    }
+
+    public ProxyResultSet( int expectedSize ) {
+        this.columns = new Columns( Math.max( 16, expectedSize ) );
+    }
+
+    /**
+     * Добавляет строку; подходит как {@link ResultSink}: {@code results::add}
+     *
+     * @param address       - IPv4-адрес, упакованный в {@code int}
+     * @param proxyType     - тип прокси, одно из {@code PROTOCOL_*}
+     * @param latencyMicros - время отклика в микросекундах
+     * @param country       - двухбуквенный код страны
+     */
+    public synchronized void add( int address, int port, String proxyType, int latencyMicros, String country ) {
+        final int type = typeCode( proxyType );
+        if( type < 0 ) {
+            throw new IllegalArgumentException( "Unsupported proxy type: " + proxyType );
+        }
+        final int row = size;
+        Columns target = columns;
+        if( row == target.addresses.length ) {
+            target = target.grow();
+            columns = target;
+        }
+        target.addresses[row] = address;
+        target.ports[row] = (char) port;
+        target.latencies[row] = latencyMicros;
+        target.types[row] = (byte) type;
+        target.countries[row] = (short) CountryCodes.encode( country );
+        size = row + 1;
+    }
+
+    public void add( ProxyDto proxyDto ) {
+        final long address = Ipv4.parse( proxyDto.getHost() );
+        if( address == Ipv4.INVALID ) {
+            throw new IllegalArgumentException( "Not an IPv4 address: " + proxyDto.getHost() );
+        }
+        add( (int) address, proxyDto.getPort(), proxyDto.getProxyType(),
+                proxyDto.getResponseTime().movePointRight( 6 ).intValue(), proxyDto.getCountry() );
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Отдает строки в порядке добавления, без создания {@link ProxyDto}
+     */
+    public void forEach( ResultSink sink ) {
+        final int count = size;
+        final Columns snapshot = columns;
+        for( int row = 0; row < count; row++ ) {
+            sink.accept( snapshot.addresses[row], snapshot.ports[row], TYPES[snapshot.types[row]],
+                    snapshot.latencies[row], CountryCodes.decode( snapshot.countries[row] ) );
+        }
+    }
+
+    public ProxyDto get( int row ) {
+        final int count = size;
+        if( row < 0 || row >= count ) {
+            throw new IndexOutOfBoundsException( "Row " + row + " of " + count );
+        }
+        return toDto( columns, row );
+    }
+
+    /**
+     * Страница результатов в заданном порядке
+     *
+     * @param offset       - номер первой строки страницы
+     * @param limit        - размер страницы
+     * @param sortProperty - свойство сортировки, {@code null} — в порядке добавления
+     * @param descending   - по убыванию
+     */
+    public List<ProxyDto> page( int offset, int limit, String sortProperty, boolean descending ) {
+        if( sortProperty != null && ! SORT_PROPERTIES.contains( sortProperty ) ) {
+            throw new IllegalArgumentException( "Unsupported sort property: " + sortProperty );
+        }
+        final int count = size;
+        final Columns snapshot = columns;
+        final int[] rows = sortProperty == null ? null : sortedRows( sortProperty, count, snapshot );
+        final int end = (int) Math.min( count, (long) Math.max( offset, 0 ) + Math.max( limit, 0 ) );
+
+        final List<ProxyDto> page = new ArrayList<>( Math.max( end - offset, 0 ) );
+        for( int position = Math.max( offset, 0 ); position < end; position++ ) {
+            final int ordered = descending ? count - 1 - position : position;
+            page.add( toDto( snapshot, rows == null ? ordered : rows[ordered] ) );
+        }
+        return page;
+    }
+
+    /**
+     * Построчный JSON: одна строка — один прокси, поля как у {@link ProxyDto}. Строки собираются вручную, без сериализатора
+     */
+    public void writeNdjson( OutputStream out ) throws IOException {
+        final int count = size;
+        final Columns snapshot = columns;
+        final Writer writer = new OutputStreamWriter( new BufferedOutputStream( out, 1 << 16 ), StandardCharsets.UTF_8 );
+        final StringBuilder line = new StringBuilder( 128 );
+        for( int row = 0; row < count; row++ ) {
+            line.setLength( 0 );
+            line.append( "{\"host\":\"" ).append( Ipv4.toString( snapshot.addresses[row] ) )
+                    .append( "\",\"port\":" ).append( (int) snapshot.ports[row] )
+                    .append( ",\"proxyType\":\"" ).append( TYPES[snapshot.types[row]] )
+                    .append( "\",\"responseTime\":" ).append( responseTime( snapshot.latencies[row] ).toPlainString() )
+                    .append( ",\"country\":" );
+            final String country = CountryCodes.decode( snapshot.countries[row] );
+            if( country == null ) {
+                line.append( "null" );
+            } else {
+                line.append( '"' ).append( country ).append( '"' );
+            }
+            writer.append( line.append( "}\n" ) );
+        }
+        writer.flush();
+    }
+
+    /**
+     * Бинарная выгрузка по колонкам, big-endian: {@code "PRS1"}, версия, число строк, таблица типов
+     * (число и имена в modified UTF-8), затем колонки целиком — адреса ({@code int}), порты ({@code short}),
+     * задержки в микросекундах ({@code int}), номера типов ({@code byte}) и номера стран ({@code short}, {@code -1} — неизвестна).
+     */
+    public void writeBinary( OutputStream out ) throws IOException {
+        final int count = size;
+        final Columns snapshot = columns;
+        final DataOutputStream data = new DataOutputStream( new BufferedOutputStream( out, 1 << 16 ) );
+        data.writeInt( MAGIC );
+        data.writeInt( VERSION );
+        data.writeInt( count );
+        data.writeByte( TYPES.length );
+        for( String type : TYPES ) {
+            data.writeUTF( type );
+        }
+        for( int row = 0; row < count; row++ ) {
+            data.writeInt( snapshot.addresses[row] );
+        }
+        for( int row = 0; row < count; row++ ) {
+            data.writeShort( snapshot.ports[row] );
+        }
+        for( int row = 0; row < count; row++ ) {
+            data.writeInt( snapshot.latencies[row] );
+        }
+        for( int row = 0; row < count; row++ ) {
+            data.writeByte( snapshot.types[row] );
+        }
+        for( int row = 0; row < count; row++ ) {
+            data.writeShort( snapshot.countries[row] );
+        }
+        data.flush();
+    }
+
+    /**
+     * Читает выгрузку {@link #writeBinary}
+     */
+    public static ProxyResultSet readBinary( InputStream in ) throws IOException {
+        return readBinary( in, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Читает выгрузку {@link #writeBinary} с другого узла: число строк проверяется до выделения колонок
+     *
+     * @param maxCount - сколько строк может быть в выгрузке
+     */
+    public static ProxyResultSet readBinary( InputStream in, int maxCount ) throws IOException {
+        final DataInputStream data = new DataInputStream( in );
+        if( data.readInt() != MAGIC || data.readInt() != VERSION ) {
+            throw new IOException( "Not a proxy result set export" );
+        }
+        final int count = data.readInt();
+        if( count < 0 || count > maxCount ) {
+            throw new IOException( "Row count out of range: " + count );
+        }
+        // Выгрузка могла прийти с другого узла: неизвестный тип — ошибка чтения, а не номер -1 в колонке
+        final byte[] codes = new byte[data.readUnsignedByte()];
+        for( int i = 0; i < codes.length; i++ ) {
+            final String type = data.readUTF();
+            final int code = typeCode( type );
+            if( code < 0 ) {
+                throw new IOException( "Unknown proxy type: " + type );
+            }
+            codes[i] = (byte) code;
+        }
+
+        final ProxyResultSet results = new ProxyResultSet( count );
+        final Columns target = results.columns;
+        for( int row = 0; row < count; row++ ) {
+            target.addresses[row] = data.readInt();
+        }
+        for( int row = 0; row < count; row++ ) {
+            target.ports[row] = data.readChar();
+        }
+        for( int row = 0; row < count; row++ ) {
+            target.latencies[row] = data.readInt();
+        }
+        for( int row = 0; row < count; row++ ) {
+            final int type = data.readUnsignedByte();
+            if( type >= codes.length ) {
+                throw new IOException( "Proxy type out of table: " + type );
+            }
+            target.types[row] = codes[type];
+        }
+        for( int row = 0; row < count; row++ ) {
+            target.countries[row] = data.readShort();
+        }
+        results.size = count;
+        return results;
+    }
+
+    // Номера строк в порядке свойства; ключ сортировки — старшие 32 бита, номер строки — младшие
+    private int[] sortedRows( String property, int count, Columns snapshot ) {
+        final SortedRows cached = sorted;
+        if( cached != null && cached.size == count && cached.property.equals( property ) ) {
+            return cached.rows;
+        }
+
+        final long[] keys = new long[count];
+        for( int row = 0; row < count; row++ ) {
+            keys[row] = ( (long) sortKey( property, snapshot, row ) << 32 ) | row;
+        }
+        Arrays.sort( keys );
+        final int[] rows = new int[count];
+        for( int i = 0; i < count; i++ ) {
+            rows[i] = (int) keys[i];
+        }
+        sorted = new SortedRows( property, count, rows );
+        return rows;
+    }
+
+    private static int sortKey( String property, Columns columns, int row ) {
+        return switch( property ) {
+            // Инверсия знакового бита: знаковое сравнение совпадает с беззнаковым сравнением адресов
+            case SORT_HOST -> columns.addresses[row] ^ Integer.MIN_VALUE;
+            case SORT_PORT -> columns.ports[row];
+            case SORT_TYPE -> columns.types[row];
+            case SORT_RESPONSE_TIME -> columns.latencies[row];
+            case SORT_COUNTRY -> columns.countries[row];
+            default -> throw new IllegalArgumentException( "Unsupported sort property: " + property );
+        };
+    }
+
+    private static ProxyDto toDto( Columns columns, int row ) {
+        return toDto( columns.addresses[row], columns.ports[row], TYPES[columns.types[row]],
+                columns.latencies[row], CountryCodes.decode( columns.countries[row] ) );
+    }
+
+    /**
+     * Объект API из полей результата, см. {@link ResultSink#accept}
+     */
+    public static ProxyDto toDto( int address, int port, String proxyType, int latencyMicros, String country ) {
+        return new ProxyDto()
+                .setHost( Ipv4.toString( address ) )
+                .setPort( port )
+                .setProxyType( proxyType )
+                .setResponseTime( responseTime( latencyMicros ) )
+                .setCountry( country );
+    }
+
+    // Секунды с тремя знаками, как в ProxyDto
+    private static BigDecimal responseTime( int latencyMicros ) {
+        return BigDecimal.valueOf( latencyMicros, 6 ).setScale( 3, RoundingMode.HALF_UP );
+    }
+
+    private static int typeCode( String proxyType ) {
+        for( int i = 0; i < TYPES.length; i++ ) {
+            if( TYPES[i].equalsIgnoreCase( proxyType ) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Columns {
+        private final int[] addresses;
+        private final char[] ports;
+        private final int[] latencies;
+        private final byte[] types;
+        private final short[] countries;
+
+        private Columns( int capacity ) {
+            this( new int[capacity], new char[capacity], new int[capacity], new byte[capacity], new short[capacity] );
+        }
+
+        private Columns( int[] addresses, char[] ports, int[] latencies, byte[] types, short[] countries ) {
+            this.addresses = addresses;
+            this.ports = ports;
+            this.latencies = latencies;
+            this.types = types;
+            this.countries = countries;
+        }
+
+        private Columns grow() {
+            final int capacity = addresses.length * 2;
+            return new Columns( Arrays.copyOf( addresses, capacity ), Arrays.copyOf( ports, capacity ),
+                    Arrays.copyOf( latencies, capacity ), Arrays.copyOf( types, capacity ), Arrays.copyOf( countries, capacity ) );
+        }
+    }
+
+    private record SortedRows( String property, int size, int[] rows ) {
+    }
+}
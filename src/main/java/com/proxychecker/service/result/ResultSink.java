@@ -0,0 +1,19 @@
+package com.proxychecker.service.result;
+
+/**
+ * Приемник рабочих прокси в примитивном виде.
+ * <p>
+ * Проверка отдает результат полями, без {@link com.proxychecker.dto.ProxyDto}: строка адреса,
+ * {@code BigDecimal} и сам объект создаются только там, где их требует API.
+ */
+@FunctionalInterface
+public interface ResultSink {
+
+    /**
+     * @param address       - IPv4-адрес, упакованный в {@code int}
+     * @param proxyType     - тип прокси, одно из {@code PROTOCOL_*}
+     * @param latencyMicros - время отклика в микросекундах
+     * @param country       - двухбуквенный код страны
+     */
+    void accept( int address, int port, String proxyType, int latencyMicros, String country );
+}
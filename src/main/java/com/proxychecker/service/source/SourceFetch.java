@@ -0,0 +1,20 @@
+package com.proxychecker.service.source;
+
+import com.proxychecker.service.ProxyListParser;
+
+/**
+ * Итог загрузки списка источника
+ *
+ * @param status  - откуда взят список
+ * @param parser  - разборщик с количеством принятых и пропущенных строк
+ * @param added   - адресов, которых не было в предыдущем снимке
+ * @param removed - адресов предыдущего снимка, которых нет в новом списке
+ */
+public record SourceFetch( Status status, ProxyListParser parser, int added, int removed ) {
+
+    public enum Status {
+        DOWNLOADED,        // Скачан новый список
+        NOT_MODIFIED,      // Источник ответил 304, список взят из снимка
+        SNAPSHOT_FALLBACK  // Источник недоступен, список взят из снимка
+    }
+}
@@ -0,0 +1,331 @@
+package com.proxychecker.service.source;
+
+import com.proxychecker.service.EndpointSink;
+import com.proxychecker.service.ProxyListDownloader;
+import com.proxychecker.service.ProxyListParser;
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.LongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка списков прокси с условными запросами и снимками на диске.
+ * <p>
+ * Все загрузки идут через один HTTP/2 клиент с общим пулом соединений. Последний успешно
+ * скачанный список каждого источника хранится в {@code snapshot-dir} вместе с его {@code ETag}
+ * и {@code Last-Modified}; следующий запрос отправляется с {@code If-None-Match} и
+ * {@code If-Modified-Since}. Если список не изменился (304), источник не ответил вовремя
+ * или ответил ошибкой, адреса читаются из снимка. Срок {@code download-timeout-millis} ограничивает
+ * всю загрузку вместе с телом ответа: источник, отдающий список по байту, тоже уходит на снимок.
+ * <p>
+ * Новый список разбирается потоком, пока скачивается, и попутно сравнивается со снимком.
+ * Адреса, которых в снимке не было, сразу уходят в {@code sink}; адреса из снимка откладываются
+ * и отдаются в {@code onUnchanged} после загрузки. Список из снимка (304 или отказ источника) целиком
+ * состоит из прежних адресов и идет в {@code onUnchanged}; новые адреса оборвавшейся загрузки в снимке
+ * не встречаются и поэтому не повторяются. В итоге загрузки — сколько адресов появилось и сколько исчезло.
+ * <p>
+ * Снимок и его валидаторы пишутся во временные файлы и атомарно переносятся на место; одновременные
+ * загрузки одного источника пишут каждая в свой файл, а переносят снимок с валидаторами по очереди.
+ */
+@Component
+public class SourceFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger( SourceFetcher.class );
+
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+
+    private final HttpClient httpClient;
+    private final Path snapshotDir;
+    private final Duration timeout;
+    private final Duration downloadTimeout;
+    private final ConcurrentMap<Path, Object> publishLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param snapshotDir           - каталог снимков; пусто — без снимков и условных запросов
+     * @param timeoutMillis         - сколько ждать ответа источника до перехода на снимок
+     * @param downloadTimeoutMillis - сколько может длиться вся загрузка списка, включая тело ответа
+     */
+    @Autowired
+    public SourceFetcher( @Value( "${proxy.checker.source.snapshot-dir:data/sources}" ) String snapshotDir,
+                          @Value( "${proxy.checker.source.timeout-millis:15000}" ) long timeoutMillis,
+                          @Value( "${proxy.checker.source.download-timeout-millis:60000}" ) long downloadTimeoutMillis ) {
+        this( snapshotDir.isBlank() ? null : Path.of( snapshotDir ), Duration.ofMillis( timeoutMillis ),
+                Duration.ofMillis( downloadTimeoutMillis ) );
+    }
+
+    SourceFetcher( Path snapshotDir, Duration timeout, Duration downloadTimeout ) {
+        this.snapshotDir = snapshotDir;
+        this.timeout = timeout;
+        this.downloadTimeout = downloadTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version( HttpClient.Version.HTTP_2 )
+                .followRedirects( HttpClient.Redirect.NORMAL )
+                .connectTimeout( timeout )
+                .build();
+    }
+
+    /**
+     * Загружает список источника и отдает каждый адрес в sink
+     *
+     * @param url - адрес источника
+     * @return откуда взят список и чем он отличается от предыдущего
+     * @throws UncheckedIOException источник недоступен и снимка нет
+     */
+    public SourceFetch fetch( String url, EndpointSink sink ) throws InterruptedException {
+        return fetch( url, sink, sink );
+    }
+
+    /**
+     * Загружает список источника: новые адреса сразу отдаются в sink, адреса из прошлого снимка — в onUnchanged
+     *
+     * @param url         - адрес источника
+     * @param sink        - адреса, которых не было в прошлом снимке
+     * @param onUnchanged - адреса прошлого снимка; отдаются после новых
+     * @return откуда взят список и чем он отличается от предыдущего
+     * @throws UncheckedIOException источник недоступен и снимка нет
+     */
+    public SourceFetch fetch( String url, EndpointSink sink, EndpointSink onUnchanged ) throws InterruptedException {
+        final Path snapshot = snapshotDir == null ? null : snapshotDir.resolve( fileName( url ) + ".txt" );
+        final Path meta = snapshot == null ? null : snapshotDir.resolve( fileName( url ) + ".properties" );
+        final Properties validators = snapshot != null && Files.exists( snapshot ) ? readMeta( meta ) : new Properties();
+
+        final HttpRequest.Builder request = HttpRequest.newBuilder( URI.create( url ) ).timeout( timeout ).GET();
+        if( validators.getProperty( ETAG ) != null ) {
+            request.header( "If-None-Match", validators.getProperty( ETAG ) );
+        }
+        if( validators.getProperty( LAST_MODIFIED ) != null ) {
+            request.header( "If-Modified-Since", validators.getProperty( LAST_MODIFIED ) );
+        }
+
+        final long deadline = System.nanoTime() + downloadTimeout.toNanos();
+        final int[] added = new int[1]; // Новые адреса, уже отданные в sink до обрыва загрузки
+        try {
+            final HttpResponse<InputStream> response = httpClient.send( request.build(), HttpResponse.BodyHandlers.ofInputStream() );
+            try( InputStream body = new DeadlineInputStream( response.body(), deadline ) ) {
+                if( response.statusCode() == 304 && ! validators.isEmpty() ) {
+                    return readSnapshot( snapshot, onUnchanged, SourceFetch.Status.NOT_MODIFIED );
+                }
+                if( response.statusCode() != 200 ) {
+                    throw new IOException( "HTTP " + response.statusCode() );
+                }
+                if( snapshot == null ) {
+                    return new SourceFetch( SourceFetch.Status.DOWNLOADED, ProxyListDownloader.parseStream( body, sink ), 0, 0 );
+                }
+                return download( body, response, snapshot, meta, added, sink, onUnchanged );
+            }
+        } catch( IOException e ) {
+            if( snapshot == null || ! Files.exists( snapshot ) ) {
+                throw new UncheckedIOException( e );
+            }
+            logger.warn( "Source {} failed ({}) after {} new endpoints, using snapshot", url, e.toString(), added[0] );
+            return readSnapshot( snapshot, onUnchanged, SourceFetch.Status.SNAPSHOT_FALLBACK );
+        }
+    }
+
+    // Разбирает новый список потоком, параллельно записывая его во временный файл и сравнивая со снимком
+    private SourceFetch download( InputStream body, HttpResponse<?> response, Path snapshot, Path meta,
+                                  int[] added, EndpointSink sink, EndpointSink onUnchanged ) throws IOException {
+        final LongHashSet previous = new LongHashSet( 1 << 12 );
+        if( Files.exists( snapshot ) ) {
+            ProxyListDownloader.streamFile( snapshot, ( address, port ) -> previous.add( Endpoints.pack( address, port ) ) );
+        }
+        final LongHashSet current = new LongHashSet( 1 << 12 );
+        final long[][] unchanged = { new long[1024] }; // Адреса из снимка ждут конца загрузки
+        final int[] kept = new int[1]; // sink источника вызывается из одного потока
+        final EndpointSink diffing = ( address, port ) -> {
+            final long endpoint = Endpoints.pack( address, port );
+            if( ! current.add( endpoint ) ) {
+                return;
+            }
+            if( ! previous.contains( endpoint ) ) {
+                added[0]++;
+                sink.accept( address, port );
+                return;
+            }
+            if( kept[0] == unchanged[0].length ) {
+                unchanged[0] = Arrays.copyOf( unchanged[0], kept[0] * 2 );
+            }
+            unchanged[0][kept[0]++] = endpoint;
+        };
+
+        Files.createDirectories( snapshot.getParent() );
+        final Path partial = Files.createTempFile( snapshot.getParent(), snapshot.getFileName().toString(), ".part" );
+        final Path partialMeta = Files.createTempFile( snapshot.getParent(), meta.getFileName().toString(), ".part" );
+        final ProxyListParser parser;
+        try {
+            try( OutputStream out = Files.newOutputStream( partial ) ) {
+                parser = ProxyListDownloader.parseStream( new TeeInputStream( body, out ), diffing );
+            }
+
+            final Properties validators = new Properties();
+            response.headers().firstValue( "ETag" ).ifPresent( value -> validators.setProperty( ETAG, value ) );
+            response.headers().firstValue( "Last-Modified" ).ifPresent( value -> validators.setProperty( LAST_MODIFIED, value ) );
+            try( Writer writer = Files.newBufferedWriter( partialMeta, StandardCharsets.UTF_8 ) ) {
+                validators.store( writer, response.uri().toString() );
+            }
+            // Снимок раньше валидаторов: при сбое между переносами новый снимок со старым ETag лишь скачается заново
+            synchronized( publishLocks.computeIfAbsent( snapshot, path -> new Object() ) ) {
+                Files.move( partial, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+                Files.move( partialMeta, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+        } finally {
+            Files.deleteIfExists( partial );
+            Files.deleteIfExists( partialMeta );
+        }
+
+        for( int i = 0; i < kept[0]; i++ ) {
+            onUnchanged.accept( Endpoints.address( unchanged[0][i] ), Endpoints.port( unchanged[0][i] ) );
+        }
+        return new SourceFetch( SourceFetch.Status.DOWNLOADED, parser, added[0], previous.size() - kept[0] );
+    }
+
+    private static SourceFetch readSnapshot( Path snapshot, EndpointSink sink, SourceFetch.Status status ) {
+        try {
+            return new SourceFetch( status, ProxyListDownloader.streamFile( snapshot, sink ), 0, 0 );
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private static Properties readMeta( Path meta ) {
+        final Properties properties = new Properties();
+        if( Files.exists( meta ) ) {
+            try( Reader reader = Files.newBufferedReader( meta, StandardCharsets.UTF_8 ) ) {
+                properties.load( reader );
+            } catch( IOException e ) {
+                logger.warn( "Unreadable snapshot metadata {}: {}", meta, e.toString() );
+            }
+        }
+        return properties;
+    }
+
+    // Имя снимка по адресу источника: адреса длинные и с символами, недопустимыми в именах файлов
+    private static String fileName( String url ) {
+        try {
+            final byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( url.getBytes( StandardCharsets.UTF_8 ) );
+            return HexFormat.of().formatHex( digest, 0, 16 );
+        } catch( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Тело ответа со сроком загрузки: таймаут запроса ограничивает только ожидание заголовков.
+     * По истечении срока поток закрывается, и чтение, даже заблокированное, заканчивается ошибкой
+     */
+    private static final class DeadlineInputStream extends FilterInputStream {
+        private final CompletableFuture<Void> timer = new CompletableFuture<>();
+        private volatile boolean expired;
+
+        private DeadlineInputStream( InputStream in, long deadlineNanos ) {
+            super( in );
+            timer.completeOnTimeout( null, Math.max( deadlineNanos - System.nanoTime(), 0 ), TimeUnit.NANOSECONDS )
+                    .thenRun( this::expire );
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return check( in.read() );
+            } catch( IOException e ) {
+                throw expired ? timedOut() : e;
+            }
+        }
+
+        @Override
+        public int read( byte[] buffer, int offset, int length ) throws IOException {
+            try {
+                return check( in.read( buffer, offset, length ) );
+            } catch( IOException e ) {
+                throw expired ? timedOut() : e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            timer.cancel( false );
+            in.close();
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                in.close();
+            } catch( IOException ignored ) {
+                // Поток закрывается, чтобы прервать чтение; ошибка закрытия ничего не меняет
+            }
+        }
+
+        // Закрытый по сроку поток может вернуть конец данных вместо ошибки — оборванный список не считается скачанным
+        private int check( int read ) throws IOException {
+            if( expired ) {
+                throw timedOut();
+            }
+            return read;
+        }
+
+        private static IOException timedOut() {
+            return new HttpTimeoutException( "Source download timed out" );
+        }
+    }
+
+    // Копирует прочитанные байты в снимок
+    private static final class TeeInputStream extends InputStream {
+        private final InputStream in;
+        private final OutputStream copy;
+
+        private TeeInputStream( InputStream in, OutputStream copy ) {
+            this.in = in;
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if( b >= 0 ) {
+                copy.write( b );
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] buffer, int offset, int length ) throws IOException {
+            final int read = in.read( buffer, offset, length );
+            if( read > 0 ) {
+                copy.write( buffer, offset, read );
+            }
+            return read;
+        }
+    }
+}
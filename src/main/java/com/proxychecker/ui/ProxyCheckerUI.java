@@ -2,15 +2,21 @@ package com.proxychecker.ui;
 
 import com.proxychecker.dto.ProxyDto;
 import com.proxychecker.service.ProxyCheckerService;
+import com.proxychecker.service.result.ProxyResultSet;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.grid.ColumnTextAlign;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.grid.GridVariant;
+import com.vaadin.flow.component.grid.dataview.GridLazyDataView;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.Route;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +25,12 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.proxychecker.constants.AppConstants.FAST_RESPONSE_MILLIS;
+import static com.proxychecker.constants.AppConstants.PROXY_TYPE_ALL;
+import static com.proxychecker.constants.AppConstants.RESOURCE_ALL;
 import static com.proxychecker.constants.AppConstants.RESOURCE_GITHUB;
 import static com.proxychecker.constants.AppConstants.RESOURCE_PROXY_LIST;
 
@@ -32,10 +43,14 @@ public class ProxyCheckerUI extends VerticalLayout {
     private final Div resultDiv;
     private final ComboBox<String> proxyTypeComboBox;
     private final ComboBox<String> resourceComboBox;
+    private final Button checkButton;
 
     // Таблица для отображения прокси
     private final Grid<ProxyDto> proxyGrid;
 
+    // Текущая потоковая проверка
+    private Flow.Subscription checkSubscription;
+
     @Autowired
     public ProxyCheckerUI( ProxyCheckerService proxyCheckerService ) {
         this.proxyCheckerService = proxyCheckerService;
@@ -45,7 +60,7 @@ public class ProxyCheckerUI extends VerticalLayout {
         proxyGrid.removeAllColumns();
 
         proxyGrid.addColumn( new ComponentRenderer<>( proxy -> {
-                    Image statusImage = Objects.nonNull( proxy.getResponseTime() ) && proxy.getResponseTime().compareTo( BigDecimal.valueOf( 0.300 ) ) < 0
+                    Image statusImage = Objects.nonNull( proxy.getResponseTime() ) && proxy.getResponseTime().compareTo( BigDecimal.valueOf( FAST_RESPONSE_MILLIS, 3 ) ) < 0
                             ? new Image( "images/status/ok.png", "OK" )
                             : new Image( "images/status/warning.png", "Warning" );
 
@@ -72,6 +87,7 @@ public class ProxyCheckerUI extends VerticalLayout {
 
         proxyGrid.addColumn( proxy -> proxy.getHost() + ":" + proxy.getPort() )
                 .setHeader( "IP:Порт" )
+                .setSortProperty( ProxyResultSet.SORT_HOST )
                 .setTextAlign( ColumnTextAlign.CENTER )
                 .setWidth( "245px" )
                 .setFlexGrow( 0 );
@@ -79,21 +95,21 @@ public class ProxyCheckerUI extends VerticalLayout {
         proxyGrid.addColumn( ProxyDto::getProxyType )
                 .setHeader( "Тип прокси" )
                 .setTextAlign( ColumnTextAlign.CENTER )
-                .setComparator( ProxyDto::getProxyType )
+                .setSortProperty( ProxyResultSet.SORT_TYPE )
                 .setWidth( "145px" )
                 .setFlexGrow( 0 );
 
         proxyGrid.addColumn( ProxyDto::getResponseTime )
                 .setHeader( "Время отклика (с)" )
                 .setTextAlign( ColumnTextAlign.CENTER )
-                .setComparator( ProxyDto::getResponseTime )
+                .setSortProperty( ProxyResultSet.SORT_RESPONSE_TIME )
                 .setWidth( "195px" )
                 .setFlexGrow( 0 );
 
         proxyGrid.addColumn( ProxyDto::getCountry )
                 .setHeader( "Страна" )
                 .setTextAlign( ColumnTextAlign.CENTER )
-                .setComparator( ProxyDto::getCountry )
+                .setSortProperty( ProxyResultSet.SORT_COUNTRY )
                 .setWidth( "125px" )
                 .setFlexGrow( 0 );
 
@@ -101,16 +117,16 @@ public class ProxyCheckerUI extends VerticalLayout {
         proxyGrid.setHeight( "700px" );
 
         proxyTypeComboBox = new ComboBox<>( "Тип прокси" );
-        proxyTypeComboBox.setItems( "HTTP", "SOCKS4", "SOCKS5" );
+        proxyTypeComboBox.setItems( "HTTP", "SOCKS4", "SOCKS5", PROXY_TYPE_ALL );
         proxyTypeComboBox.setPlaceholder( "Выберите тип прокси" );
         proxyTypeComboBox.setAllowCustomValue( false );
 
         resourceComboBox = new ComboBox<>( "Ресурс для подключения" );
-        resourceComboBox.setItems( RESOURCE_GITHUB, RESOURCE_PROXY_LIST );
+        resourceComboBox.setItems( RESOURCE_GITHUB, RESOURCE_PROXY_LIST, RESOURCE_ALL );
         resourceComboBox.setPlaceholder( "Выберите ресурс" );
         resourceComboBox.setAllowCustomValue( false );
 
-        Button checkButton = new Button( "Проверить прокси" );
+        checkButton = new Button( "Проверить прокси" );
         checkButton.addClickListener( e -> checkProxies() );
 
         HorizontalLayout horizontalLayout = new HorizontalLayout( proxyTypeComboBox, resourceComboBox, checkButton );
@@ -119,7 +135,7 @@ public class ProxyCheckerUI extends VerticalLayout {
         add( proxyGrid, horizontalLayout, resultDiv );
     }
 
-    // Метод для проверки прокси
+    // Метод для проверки прокси: результаты копятся в колоночном наборе, таблица запрашивает у него только видимые строки
     private void checkProxies() {
         String proxyType = proxyTypeComboBox.getValue();
         String resource = resourceComboBox.getValue();
@@ -129,18 +145,69 @@ public class ProxyCheckerUI extends VerticalLayout {
             return;
         }
 
-        // Вызов сервиса для проверки прокси
-        try {
-            List<ProxyDto> proxies = proxyCheckerService.checkProxies( proxyType, resource );
-            if( proxies.isEmpty() ) {
-                resultDiv.setText( "Не удалось найти работающие прокси." );
-            } else {
-                resultDiv.setText( "Прокси проверены успешно." );
-                proxyGrid.setItems( proxies );
+        UI ui = UI.getCurrent();
+        ProxyResultSet results = new ProxyResultSet();
+        GridLazyDataView<ProxyDto> dataView = proxyGrid.setItems(
+                query -> {
+                    List<QuerySortOrder> sortOrders = query.getSortOrders();
+                    QuerySortOrder order = sortOrders.isEmpty() ? null : sortOrders.get( 0 );
+                    return results.page( query.getOffset(), query.getLimit(),
+                            order == null ? null : order.getSorted(),
+                            order != null && order.getDirection() == SortDirection.DESCENDING ).stream();
+                },
+                query -> results.size() );
+        AtomicBoolean refreshPending = new AtomicBoolean();
+        checkButton.setEnabled( false );
+        resultDiv.setText( "Идет проверка прокси..." );
+
+        // Вызов сервиса для потоковой проверки прокси
+        proxyCheckerService.streamProxies( proxyType, resource ).subscribe( new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe( Flow.Subscription subscription ) {
+                checkSubscription = subscription;
+                subscription.request( Long.MAX_VALUE );
+            }
+
+            @Override
+            public void onNext( ProxyDto proxyDto ) {
+                results.add( proxyDto );
+                // Одно обновление таблицы на пачку результатов, пришедших, пока UI был занят
+                if( refreshPending.compareAndSet( false, true ) ) {
+                    ui.access( () -> {
+                        refreshPending.set( false );
+                        dataView.refreshAll();
+                    } );
+                }
+            }
+
+            @Override
+            public void onError( Throwable throwable ) {
+                ui.access( () -> {
+                    resultDiv.setText( "Ошибка: " + throwable.getMessage() );
+                    checkButton.setEnabled( true );
+                } );
             }
-        } catch( Exception e ) {
-            resultDiv.setText( "Ошибка: " + e.getMessage() );
+
+            @Override
+            public void onComplete() {
+                ui.access( () -> {
+                    dataView.refreshAll();
+                    resultDiv.setText( results.size() == 0
+                            ? "Не удалось найти работающие прокси."
+                            : "Прокси проверены успешно." );
+                    checkButton.setEnabled( true );
+                } );
+            }
+        } );
+    }
+
+    @Override
+    protected void onDetach( DetachEvent detachEvent ) {
+        // Пользователь ушел со страницы — результаты проверки больше не нужны
+        if( checkSubscription != null ) {
+            checkSubscription.cancel();
         }
+        super.onDetach( detachEvent );
     }
 
     private Image getImageCountry( String country ) {
@@ -0,0 +1,43 @@
+package com.proxychecker.util;
+
+/**
+ * Двухбуквенные коды стран в виде номеров 0..675 для компактного хранения.
+ */
+public final class CountryCodes {
+
+    public static final int UNKNOWN = -1;
+
+    // Все коды заранее, чтобы декодирование не создавало строк
+    private static final String[] CODES = new String[26 * 26];
+
+    static {
+        for( int i = 0; i < CODES.length; i++ ) {
+            CODES[i] = new String( new char[]{ (char) ( 'A' + i / 26 ), (char) ( 'A' + i % 26 ) } );
+        }
+    }
+
+    private CountryCodes() {
+    }
+
+    /**
+     * @return номер кода или {@link #UNKNOWN}, если это не двухбуквенный код
+     */
+    public static int encode( CharSequence country ) {
+        if( country == null || country.length() != 2 ) {
+            return UNKNOWN;
+        }
+        int first = Character.toUpperCase( country.charAt( 0 ) ) - 'A';
+        int second = Character.toUpperCase( country.charAt( 1 ) ) - 'A';
+        if( first < 0 || first >= 26 || second < 0 || second >= 26 ) {
+            return UNKNOWN;
+        }
+        return first * 26 + second;
+    }
+
+    /**
+     * @return код страны или {@code null} для {@link #UNKNOWN}
+     */
+    public static String decode( int code ) {
+        return code >= 0 && code < CODES.length ? CODES[code] : null;
+    }
+}
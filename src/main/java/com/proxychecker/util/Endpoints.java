@@ -0,0 +1,39 @@
+package com.proxychecker.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Адрес прокси, упакованный в {@code long}: IPv4 в битах 16..47, порт в младших 16 битах.
+ */
+public final class Endpoints {
+
+    private Endpoints() {
+    }
+
+    public static long pack( int address, int port ) {
+        return ( Integer.toUnsignedLong( address ) << 16 ) | ( port & 0xFFFF );
+    }
+
+    public static int address( long endpoint ) {
+        return (int) ( endpoint >>> 16 );
+    }
+
+    public static int port( long endpoint ) {
+        return (int) ( endpoint & 0xFFFF );
+    }
+
+    public static String toString( int address, int port ) {
+        return Ipv4.toString( address ) + ":" + port;
+    }
+
+    public static InetSocketAddress toSocketAddress( int address, int port ) {
+        byte[] bytes = { (byte) ( address >>> 24 ), (byte) ( address >>> 16 ), (byte) ( address >>> 8 ), (byte) address };
+        try {
+            return new InetSocketAddress( InetAddress.getByAddress( bytes ), port );
+        } catch( UnknownHostException e ) {
+            throw new IllegalStateException( e ); // Невозможно для массива из 4 байт
+        }
+    }
+}
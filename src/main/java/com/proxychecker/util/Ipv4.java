@@ -0,0 +1,54 @@
+package com.proxychecker.util;
+
+/**
+ * Разбор и форматирование IPv4-адресов, упакованных в {@code int}.
+ */
+public final class Ipv4 {
+
+    public static final long INVALID = -1L;
+
+    private Ipv4() {
+    }
+
+    /**
+     * Разбирает адрес вида {@code a.b.c.d} без промежуточных строк.
+     *
+     * @param text - текст адреса
+     * @return адрес в младших 32 битах или {@link #INVALID}, если это не IPv4
+     */
+    public static long parse( CharSequence text ) {
+        return parse( text, 0, text.length() );
+    }
+
+    public static long parse( CharSequence text, int from, int to ) {
+        int address = 0;
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for( int i = from; i < to; i++ ) {
+            char c = text.charAt( i );
+            if( c >= '0' && c <= '9' ) {
+                value = value * 10 + ( c - '0' );
+                if( ++ digits > 3 || value > 255 ) {
+                    return INVALID;
+                }
+            } else if( c == '.' && digits > 0 && octets < 3 ) {
+                address = ( address << 8 ) | value;
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                return INVALID;
+            }
+        }
+        if( octets != 3 || digits == 0 ) {
+            return INVALID;
+        }
+        return ( ( address << 8 ) | value ) & 0xFFFFFFFFL;
+    }
+
+    public static String toString( int address ) {
+        return ( ( address >>> 24 ) & 0xFF ) + "." + ( ( address >>> 16 ) & 0xFF ) + "."
+                + ( ( address >>> 8 ) & 0xFF ) + "." + ( address & 0xFF );
+    }
+}
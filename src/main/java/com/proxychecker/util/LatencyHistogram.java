@@ -0,0 +1,64 @@
+package com.proxychecker.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек с корзинами фиксированной ширины для оценки перцентилей на лету.
+ * <p>
+ * Запись — два атомарных инкремента без блокировок, поэтому гистограмму можно пополнять
+ * из потока селектора и пула одновременно. Значения больше верхней границы попадают в последнюю корзину.
+ */
+public class LatencyHistogram {
+
+    private final int bucketMillis;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param maxMillis    - верхняя граница учитываемых задержек
+     * @param bucketMillis - ширина корзины, она же точность перцентиля
+     */
+    public LatencyHistogram( long maxMillis, int bucketMillis ) {
+        if( maxMillis <= 0 || bucketMillis <= 0 ) {
+            throw new IllegalArgumentException( "Histogram bounds must be positive: " + maxMillis + ", " + bucketMillis );
+        }
+        this.bucketMillis = bucketMillis;
+        this.buckets = new AtomicLongArray( (int) ( ( maxMillis + bucketMillis - 1 ) / bucketMillis ) );
+    }
+
+    /**
+     * @return число записанных значений вместе с этим
+     */
+    public long record( long millis ) {
+        buckets.incrementAndGet( (int) Math.min( Math.max( millis, 0 ) / bucketMillis, buckets.length() - 1 ) );
+        return count.incrementAndGet();
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Верхняя граница корзины, в которую попадает перцентиль, — оценка сверху с точностью до ширины корзины
+     *
+     * @param percentile - от 0 до 1
+     * @return задержка в миллисекундах или {@code -1}, если значений еще нет
+     */
+    public long percentile( double percentile ) {
+        final long total = count.get();
+        if( total == 0 ) {
+            return -1;
+        }
+        final long rank = Math.max( 1, (long) Math.ceil( percentile * total ) );
+        long seen = 0;
+        for( int bucket = 0; bucket < buckets.length(); bucket++ ) {
+            seen += buckets.get( bucket );
+            if( seen >= rank ) {
+                return (long) ( bucket + 1 ) * bucketMillis;
+            }
+        }
+        // Счетчик опередил корзины при одновременной записи
+        return (long) buckets.length() * bucketMillis;
+    }
+}
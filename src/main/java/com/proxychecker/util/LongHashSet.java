@@ -0,0 +1,86 @@
+package com.proxychecker.util;
+
+/**
+ * Множество примитивных {@code long} с открытой адресацией и линейным пробированием.
+ * <p>
+ * Без упаковки в {@code Long} и без узлов: одна ячейка массива на элемент.
+ * Потокобезопасно — источники могут добавлять адреса параллельно.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private boolean containsEmpty; // Значение 0 хранится отдельно, так как 0 — метка пустой ячейки
+
+    public LongHashSet( int expectedSize ) {
+        int capacity = Integer.highestOneBit( Math.max( 16, expectedSize ) - 1 ) << 2;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return {@code true}, если значение добавлено, и {@code false}, если оно уже было
+     */
+    public synchronized boolean add( long value ) {
+        if( value == EMPTY ) {
+            if( containsEmpty ) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int slot = hash( value ) & mask;
+        while( table[slot] != EMPTY ) {
+            if( table[slot] == value ) {
+                return false;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = value;
+        // Заполненность не больше 50%
+        if( ++ size * 2 > table.length ) {
+            resize();
+        }
+        return true;
+    }
+
+    public synchronized boolean contains( long value ) {
+        if( value == EMPTY ) {
+            return containsEmpty;
+        }
+        for( int slot = hash( value ) & mask; table[slot] != EMPTY; slot = ( slot + 1 ) & mask ) {
+            if( table[slot] == value ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] old = table;
+        table = new long[old.length << 1];
+        mask = table.length - 1;
+        for( long value : old ) {
+            if( value != EMPTY ) {
+                int slot = hash( value ) & mask;
+                while( table[slot] != EMPTY ) {
+                    slot = ( slot + 1 ) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    private static int hash( long value ) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) ( h ^ ( h >>> 32 ) );
+    }
+}
@@ -0,0 +1,95 @@
+package com.proxychecker.util;
+
+/**
+ * Отображение примитивных {@code long} в {@code int} с открытой адресацией и линейным пробированием.
+ * <p>
+ * Только добавление и замена, без удаления. Не потокобезопасно — синхронизацию обеспечивает владелец.
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY = 0L;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean containsEmpty; // Ключ 0 хранится отдельно, так как 0 — метка пустой ячейки
+    private int emptyValue;
+
+    /**
+     * @param expectedSize - ожидаемое число ключей
+     * @param missingValue - значение, которое {@link #get} возвращает для отсутствующего ключа
+     */
+    public LongIntHashMap( int expectedSize, int missingValue ) {
+        int capacity = Integer.highestOneBit( Math.max( 16, expectedSize ) - 1 ) << 2;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.missingValue = missingValue;
+    }
+
+    public int get( long key ) {
+        if( key == EMPTY ) {
+            return containsEmpty ? emptyValue : missingValue;
+        }
+        for( int slot = hash( key ) & mask; keys[slot] != EMPTY; slot = ( slot + 1 ) & mask ) {
+            if( keys[slot] == key ) {
+                return values[slot];
+            }
+        }
+        return missingValue;
+    }
+
+    public void put( long key, int value ) {
+        if( key == EMPTY ) {
+            if( ! containsEmpty ) {
+                containsEmpty = true;
+                size++;
+            }
+            emptyValue = value;
+            return;
+        }
+        int slot = hash( key ) & mask;
+        while( keys[slot] != EMPTY ) {
+            if( keys[slot] == key ) {
+                values[slot] = value;
+                return;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // Заполненность не больше 50%
+        if( ++ size * 2 > keys.length ) {
+            resize();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new int[oldKeys.length << 1];
+        mask = keys.length - 1;
+        for( int i = 0; i < oldKeys.length; i++ ) {
+            if( oldKeys[i] != EMPTY ) {
+                int slot = hash( oldKeys[i] ) & mask;
+                while( keys[slot] != EMPTY ) {
+                    slot = ( slot + 1 ) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash( long value ) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) ( h ^ ( h >>> 32 ) );
+    }
+}
@@ -3,7 +3,11 @@ package com.proxychecker;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest( properties = {
+        "proxy.checker.pool.enabled=false",     // Без фоновой проверки источников из сети
+        "proxy.checker.health.store=",          // Журнал состояний и снимки источников — не в рабочем каталоге
+        "proxy.checker.source.snapshot-dir="
+} )
 class ProxyCheckerApplicationTests {
 
     @Test
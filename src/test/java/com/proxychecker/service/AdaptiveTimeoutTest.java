@@ -0,0 +1,44 @@
+package com.proxychecker.service;
+
+import com.proxychecker.service.engine.ProbeResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveTimeoutTest {
+
+    @Test
+    void keepsFullTimeoutUntilEnoughSamples() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout( 3000, 100, 64, 0.95 );
+        for( int i = 0; i < 63; i++ ) {
+            timeout.record( new ProbeResult( 150, 150, null ) );
+        }
+        assertEquals( 3000, timeout.millis() );
+
+        timeout.record( new ProbeResult( 150, 150, null ) );
+        assertEquals( 160, timeout.millis() ); // Верхняя граница корзины [150, 160)
+    }
+
+    @Test
+    void ignoresFailedConnectsAndRespectsLowerBound() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout( 3000, 500, 32, 0.95 );
+        for( int i = 0; i < 32; i++ ) {
+            timeout.record( ProbeResult.FAILED );
+        }
+        assertEquals( 3000, timeout.millis() );
+
+        for( int i = 0; i < 32; i++ ) {
+            timeout.record( ProbeResult.handshakeFailed( 40 ) );
+        }
+        assertEquals( 500, timeout.millis() );
+    }
+
+    @Test
+    void fixedTimeoutNeverChanges() {
+        AdaptiveTimeout timeout = AdaptiveTimeout.fixed( 3000 );
+        for( int i = 0; i < 1000; i++ ) {
+            timeout.record( new ProbeResult( 10, 10, null ) );
+        }
+        assertEquals( 3000, timeout.millis() );
+    }
+}
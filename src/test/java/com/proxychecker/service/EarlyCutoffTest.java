@@ -0,0 +1,31 @@
+package com.proxychecker.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EarlyCutoffTest {
+
+    @Test
+    void stopsAfterEnoughFastProxies() {
+        EarlyCutoff cutoff = new EarlyCutoff( 2, 300 );
+        assertTrue( cutoff.accept( 299_000 ) );
+        assertTrue( cutoff.accept( 300_000 ) ); // Не быстрее порога — публикуется, но не считается
+        assertFalse( cutoff.isReached() );
+
+        assertTrue( cutoff.accept( 10_000 ) );
+        assertTrue( cutoff.isReached() );
+        assertTrue( cutoff.reached().isDone() );
+        assertFalse( cutoff.accept( 10_000 ) );
+    }
+
+    @Test
+    void unlimitedNeverStops() {
+        EarlyCutoff cutoff = new EarlyCutoff( 0, 300 );
+        for( int i = 0; i < 100; i++ ) {
+            assertTrue( cutoff.accept( 10_000 ) );
+        }
+        assertFalse( cutoff.isReached() );
+    }
+}
@@ -0,0 +1,82 @@
+package com.proxychecker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostConcurrencyLimiterTest {
+
+    private static final int HOST = 0x0A000001;
+
+    @Test
+    void blocksHostUntilPermitReleased() throws InterruptedException {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter( 1 );
+        limiter.acquire( HOST );
+
+        CountDownLatch acquired = new CountDownLatch( 1 );
+        Thread waiter = Thread.ofVirtual().start( () -> {
+            try {
+                limiter.acquire( HOST );
+                acquired.countDown();
+                limiter.release( HOST );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        assertFalse( acquired.await( 200, TimeUnit.MILLISECONDS ) );
+
+        limiter.release( HOST );
+        assertTrue( acquired.await( 5, TimeUnit.SECONDS ) );
+        waiter.join();
+    }
+
+    @Test
+    void otherHostsAreNotBlocked() throws InterruptedException {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter( 1 );
+        limiter.acquire( HOST );
+
+        CountDownLatch acquired = new CountDownLatch( 1 );
+        Thread.ofVirtual().start( () -> {
+            try {
+                limiter.acquire( HOST + 1 );
+                acquired.countDown();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        assertTrue( acquired.await( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    void permitIsReusableAfterRelease() throws InterruptedException {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter( 2 );
+        for( int i = 0; i < 10; i++ ) {
+            limiter.acquire( HOST );
+            limiter.acquire( HOST );
+            limiter.release( HOST );
+            limiter.release( HOST );
+        }
+        CountDownLatch acquired = new CountDownLatch( 2 );
+        Thread.ofVirtual().start( () -> {
+            try {
+                limiter.acquire( HOST );
+                acquired.countDown();
+                limiter.acquire( HOST );
+                acquired.countDown();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        assertTrue( acquired.await( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    void rejectsNonPositivePermits() {
+        assertThrows( IllegalArgumentException.class, () -> new HostConcurrencyLimiter( 0 ) );
+    }
+}
@@ -0,0 +1,66 @@
+package com.proxychecker.service;
+
+import com.proxychecker.service.engine.NioConnectEngine;
+import com.proxychecker.service.engine.ProbeResult;
+import com.proxychecker.service.engine.ProxyProtocol;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProxyCheckerMetricsTest {
+
+    private NioConnectEngine engine;
+    private SimpleMeterRegistry registry;
+    private ProxyCheckerMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NioConnectEngine( 4, 500, "127.0.0.1:443", 500 );
+        registry = new SimpleMeterRegistry();
+        metrics = new ProxyCheckerMetrics( registry, engine );
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void countsOutcomesPerStage() {
+        metrics.probed( ProbeResult.FAILED );
+        metrics.probed( ProbeResult.handshakeFailed( 20 ) );
+        metrics.probed( new ProbeResult( 50, 20, ProxyProtocol.SOCKS5 ) );
+
+        assertEquals( 1, count( "connect", "failure" ) );
+        assertEquals( 2, count( "connect", "success" ) );
+        assertEquals( 1, count( "handshake", "failure" ) );
+        assertEquals( 1, count( "handshake", "success" ) );
+
+        assertEquals( 2, latency( "connect" ).count() );
+        assertEquals( 30, latency( "handshake" ).totalTime( TimeUnit.MILLISECONDS ), 0.001 );
+    }
+
+    @Test
+    void tracksChecksInFlight() {
+        metrics.checkStarted();
+        metrics.checkStarted();
+        metrics.checkFinished();
+
+        assertEquals( 1, registry.get( "proxy.checker.checks.in-flight" ).gauge().value() );
+        assertEquals( 0, registry.get( "proxy.checker.engine.in-flight" ).gauge().value() );
+    }
+
+    private double count( String stage, String outcome ) {
+        return registry.get( "proxy.checker.stage" ).tag( "stage", stage ).tag( "outcome", outcome ).counter().count();
+    }
+
+    private Timer latency( String stage ) {
+        return registry.get( "proxy.checker.stage.latency" ).tag( "stage", stage ).timer();
+    }
+}
@@ -0,0 +1,75 @@
+package com.proxychecker.service;
+
+import com.proxychecker.util.Endpoints;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProxyListParserTest {
+
+    private static final String LIST = """
+            1.2.3.4:8080
+              10.0.0.1:3128\r
+            example.com:80
+            300.1.1.1:80
+            1.2.3.4:0
+            1.2.3.4:70000
+            1.2.3:80
+            1.2.3.4:80 junk
+
+            255.255.255.255:65535""";
+
+    private static final List<String> EXPECTED = List.of( "1.2.3.4:8080", "10.0.0.1:3128", "255.255.255.255:65535" );
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parsesValidLinesAndSkipsGarbage() {
+        List<String> endpoints = new ArrayList<>();
+        ProxyListParser parser = new ProxyListParser( ( address, port ) -> endpoints.add( Endpoints.toString( address, port ) ) );
+        byte[] bytes = LIST.getBytes( StandardCharsets.US_ASCII );
+        parser.feed( bytes, 0, bytes.length );
+        parser.finish();
+
+        assertEquals( EXPECTED, endpoints );
+        assertEquals( 3, parser.parsed() );
+        assertEquals( 6, parser.skipped() );
+    }
+
+    @Test
+    void assemblesLinesSplitAcrossChunks() {
+        byte[] bytes = LIST.getBytes( StandardCharsets.US_ASCII );
+        for( int chunk = 1; chunk <= 7; chunk++ ) {
+            List<String> endpoints = new ArrayList<>();
+            ProxyListParser parser = new ProxyListParser( ( address, port ) -> endpoints.add( Endpoints.toString( address, port ) ) );
+            for( int offset = 0; offset < bytes.length; offset += chunk ) {
+                parser.feed( bytes, offset, Math.min( chunk, bytes.length - offset ) );
+            }
+            parser.finish();
+            assertEquals( EXPECTED, endpoints );
+        }
+    }
+
+    @Test
+    void readsStreamsAndMappedFiles() throws Exception {
+        List<String> fromStream = new ArrayList<>();
+        ProxyListDownloader.parseStream( new ByteArrayInputStream( LIST.getBytes( StandardCharsets.US_ASCII ) ),
+                ( address, port ) -> fromStream.add( Endpoints.toString( address, port ) ) );
+        assertEquals( EXPECTED, fromStream );
+
+        Path file = directory.resolve( "proxies.txt" );
+        Files.writeString( file, LIST );
+        List<String> fromFile = new ArrayList<>();
+        ProxyListDownloader.streamFile( file, ( address, port ) -> fromFile.add( Endpoints.toString( address, port ) ) );
+        assertEquals( EXPECTED, fromFile );
+    }
+}
@@ -0,0 +1,103 @@
+package com.proxychecker.service;
+
+import com.proxychecker.service.engine.NioConnectEngine;
+import com.proxychecker.util.Endpoints;
+import com.proxychecker.util.Ipv4;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.proxychecker.constants.AppConstants.HTTP_PROXY_ERROR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubnetSchedulerTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void interleavesSubnetsRoundRobin() {
+        SubnetScheduler scheduler = new SubnetScheduler( 10, 10, clock::get );
+        for( int i = 1; i <= 3; i++ ) {
+            scheduler.offer( address( "10.0.0.", i ), 80 );
+        }
+        scheduler.offer( address( "10.0.1.", 1 ), 80 );
+        scheduler.offer( address( "10.0.2.", 1 ), 80 );
+
+        List<String> order = new ArrayList<>();
+        long endpoint;
+        while( ( endpoint = scheduler.poll( clock.get() ) ) != SubnetScheduler.NONE ) {
+            order.add( Ipv4.toString( Endpoints.address( endpoint ) ) );
+        }
+        assertEquals( List.of( "10.0.0.1", "10.0.1.1", "10.0.2.1", "10.0.0.2", "10.0.0.3" ), order );
+        assertEquals( 0, scheduler.pending() );
+    }
+
+    @Test
+    void throttlesSubnetToBurstThenRate() {
+        SubnetScheduler scheduler = new SubnetScheduler( 100, 2, clock::get ); // Токен каждые 10 мс
+        for( int i = 1; i <= 5; i++ ) {
+            scheduler.offer( address( "10.0.0.", i ), 80 );
+        }
+        scheduler.offer( address( "10.0.9.", 1 ), 80 );
+
+        assertNotEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        assertNotEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        assertNotEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        // Запас первой подсети исчерпан, вторая пуста
+        assertEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        assertEquals( 10 * MILLI, scheduler.nanosUntilReady( clock.get() ) );
+
+        clock.addAndGet( 5 * MILLI );
+        assertEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        clock.addAndGet( 5 * MILLI );
+        assertNotEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+
+        // Простой не копит токенов больше запаса
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 10 ) );
+        assertNotEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        assertNotEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+        assertEquals( 0, scheduler.pending() );
+        assertEquals( Long.MAX_VALUE, scheduler.nanosUntilReady( clock.get() ) );
+
+        scheduler.offer( address( "10.0.0.", 6 ), 80 );
+        assertEquals( SubnetScheduler.NONE, scheduler.poll( clock.get() ) );
+    }
+
+    @Test
+    void pacesLoopbackConnects() throws Exception {
+        try( ServerSocket server = new ServerSocket( 0, 200, InetAddress.getLoopbackAddress() );
+             NioConnectEngine engine = new NioConnectEngine( 16, 500, "127.0.0.1:443", 500 ) ) {
+            SubnetScheduler scheduler = new SubnetScheduler( 200, 5, System::nanoTime );
+            for( int i = 0; i < 25; i++ ) {
+                scheduler.offer( address( "127.0.0.", 1 ), server.getLocalPort() );
+            }
+            scheduler.close();
+
+            List<CompletableFuture<Long>> connects = new ArrayList<>();
+            long start = System.nanoTime();
+            scheduler.drainTo( ( address, port ) -> connects.add( engine.connect( Endpoints.toSocketAddress( address, port ) ) ), () -> false );
+            long elapsed = System.nanoTime() - start;
+
+            // 5 сразу и еще 20 по одному каждые 5 мс
+            assertTrue( elapsed >= 90 * MILLI, "Drained too fast: " + elapsed / MILLI + " ms" );
+            for( CompletableFuture<Long> connect : connects ) {
+                assertNotEquals( HTTP_PROXY_ERROR, connect.get() );
+            }
+            assertEquals( 25, connects.size() );
+        }
+    }
+
+    private static int address( String prefix, int host ) {
+        return (int) Ipv4.parse( prefix + host );
+    }
+}
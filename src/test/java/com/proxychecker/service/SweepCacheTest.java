@@ -0,0 +1,105 @@
+package com.proxychecker.service;
+
+import com.proxychecker.dto.ProxyDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static com.proxychecker.constants.AppConstants.PROTOCOL_SOCKS5;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SweepCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SweepCache cache = new SweepCache( 1000, clock::get );
+
+    @Test
+    void concurrentRequestsShareOneSweep() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch( 1 );
+        SweepCache.SweepRunner runner = ( results, onWorking ) -> {
+            runs.incrementAndGet();
+            onWorking.accept( 0x0A000001, 1080, PROTOCOL_SOCKS5, 120_000, "US" );
+            release.await();
+            onWorking.accept( 0x0A000002, 1080, PROTOCOL_SOCKS5, 80_000, "DE" );
+        };
+
+        SweepCache.SharedSweep first = cache.obtain( "socks5/all/0", runner );
+        List<ProxyDto> early = new ArrayList<>();
+        first.subscribe( early::add );
+        waitFor( () -> first.results().size() == 1 );
+
+        SweepCache.SharedSweep second = cache.obtain( "socks5/all/0", runner );
+        List<ProxyDto> late = new ArrayList<>();
+        second.subscribe( late::add );
+        release.countDown();
+        second.completion().join();
+
+        assertSame( first, second );
+        assertEquals( 1, runs.get() );
+        assertEquals( 2, early.size() );
+        assertEquals( 2, late.size() ); // Подписчик получил и найденный до него прокси
+        assertEquals( "10.0.0.1", late.get( 0 ).getHost() );
+        assertEquals( early, second.results() );
+    }
+
+    @Test
+    void reusesCompletedSweepWhileFresh() {
+        AtomicInteger runs = new AtomicInteger();
+        SweepCache.SweepRunner runner = ( results, onWorking ) -> runs.incrementAndGet();
+
+        SweepCache.SharedSweep first = cache.obtain( "http/all/0", runner );
+        first.completion().join();
+        clock.addAndGet( TimeUnit.MILLISECONDS.toNanos( 999 ) );
+        assertSame( first, cache.obtain( "http/all/0", runner ) );
+        assertNotSame( first, cache.obtain( "http/github/0", runner ) );
+
+        clock.addAndGet( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+        SweepCache.SharedSweep second = cache.obtain( "http/all/0", runner );
+        second.completion().join();
+        assertNotSame( first, second );
+        assertEquals( 3, runs.get() );
+    }
+
+    @Test
+    void purgesExpiredSweepsOfOtherKeys() {
+        SweepCache.SweepRunner runner = ( results, onWorking ) -> onWorking.accept( 0x0A000001, 1080, PROTOCOL_SOCKS5, 120_000, "US" );
+        for( int limit = 1; limit <= 10; limit++ ) {
+            cache.obtain( "socks5/all/" + limit, runner ).completion().join();
+        }
+        assertEquals( 10, cache.size() );
+
+        clock.addAndGet( TimeUnit.MILLISECONDS.toNanos( 1000 ) );
+        cache.obtain( "socks5/all/11", runner ).completion().join();
+        assertEquals( 1, cache.size() ); // Проверки с другими limit не остались в памяти навсегда
+    }
+
+    @Test
+    void doesNotCacheFailedSweep() {
+        SweepCache.SharedSweep failed = cache.obtain( "all/all/0", ( results, onWorking ) -> {
+            throw new IllegalStateException( "source down" );
+        } );
+        assertThrows( CompletionException.class, () -> failed.completion().join() );
+
+        SweepCache.SharedSweep retried = cache.obtain( "all/all/0", ( results, onWorking ) -> { } );
+        assertNotSame( failed, retried );
+        retried.completion().join();
+    }
+
+    private static void waitFor( BooleanSupplier condition ) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+        while( ! condition.getAsBoolean() && System.nanoTime() < deadline ) {
+            Thread.sleep( 5 );
+        }
+    }
+}
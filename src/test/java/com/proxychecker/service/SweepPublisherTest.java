@@ -0,0 +1,142 @@
+package com.proxychecker.service;
+
+import com.proxychecker.dto.ProxyDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.proxychecker.constants.AppConstants.PROTOCOL_SOCKS5;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SweepPublisherTest {
+
+    private final SweepCache cache = new SweepCache( 0, System::nanoTime );
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch( 1 );
+    private final SweepCache.SweepRunner runner = ( results, onWorking ) -> {
+        onWorking.accept( 0x0A000001, 1080, PROTOCOL_SOCKS5, 120_000, "US" );
+        release.await();
+        onWorking.accept( 0x0A000002, 1080, PROTOCOL_SOCKS5, 80_000, "DE" );
+    };
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void deliversProxiesBeforeSweepCompletes() throws InterruptedException {
+        SweepCache.SharedSweep sweep = cache.obtain( "socks5/all/0", runner );
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new SweepPublisher( () -> sweep, executor, 1000 ).subscribe( subscriber );
+
+        ProxyDto first = subscriber.items.poll( 5, TimeUnit.SECONDS );
+        assertNotNull( first );
+        assertEquals( "10.0.0.1", first.getHost() );
+        assertFalse( sweep.isDone() );
+
+        release.countDown();
+        assertEquals( "10.0.0.2", subscriber.items.poll( 5, TimeUnit.SECONDS ).getHost() );
+        assertTrue( subscriber.completed.await( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    void cancelStopsDelivery() throws InterruptedException {
+        SweepCache.SharedSweep sweep = cache.obtain( "socks5/all/0", runner );
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new SweepPublisher( () -> sweep, executor, 1000 ).subscribe( subscriber );
+        assertNotNull( subscriber.items.poll( 5, TimeUnit.SECONDS ) );
+
+        subscriber.subscription.get().cancel();
+        release.countDown();
+        sweep.completion().join();
+
+        assertNull( subscriber.items.poll( 200, TimeUnit.MILLISECONDS ) );
+        assertEquals( 1, subscriber.completed.getCount() ); // После отмены сигналов больше нет
+    }
+
+    @Test
+    void stalledSubscriberIsDroppedWithoutBlockingOthers() throws Exception {
+        int proxies = Flow.defaultBufferSize() * 3;
+        SweepCache.SharedSweep sweep = cache.obtain( "http/all/0", ( results, onWorking ) -> {
+            release.await();
+            for( int i = 0; i < proxies; i++ ) {
+                onWorking.accept( 0x0A000000 + i, 8080, "HTTP", 50_000, "US" );
+            }
+        } );
+        StalledSubscriber stalled = new StalledSubscriber();
+        RecordingSubscriber active = new RecordingSubscriber();
+        new SweepPublisher( () -> sweep, executor, 50 ).subscribe( stalled );
+        new SweepPublisher( () -> sweep, executor, 50 ).subscribe( active );
+        Thread.sleep( 100 ); // Оба подписчика подключились до начала проверки
+
+        release.countDown();
+        sweep.completion().get( 5, TimeUnit.SECONDS );
+
+        assertTrue( stalled.failed.await( 5, TimeUnit.SECONDS ) );
+        assertTrue( active.completed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( proxies, active.items.size() );
+    }
+
+    // Подписчик, который ни разу не запрашивает прокси
+    private static final class StalledSubscriber implements Flow.Subscriber<ProxyDto> {
+        private final CountDownLatch failed = new CountDownLatch( 1 );
+
+        @Override
+        public void onSubscribe( Flow.Subscription subscription ) {
+        }
+
+        @Override
+        public void onNext( ProxyDto item ) {
+        }
+
+        @Override
+        public void onError( Throwable throwable ) {
+            failed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<ProxyDto> {
+        private final BlockingQueue<ProxyDto> items = new LinkedBlockingQueue<>();
+        private final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        private final CountDownLatch completed = new CountDownLatch( 1 );
+
+        @Override
+        public void onSubscribe( Flow.Subscription subscription ) {
+            this.subscription.set( subscription );
+            subscription.request( Long.MAX_VALUE );
+        }
+
+        @Override
+        public void onNext( ProxyDto item ) {
+            items.add( item );
+        }
+
+        @Override
+        public void onError( Throwable throwable ) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.proxychecker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualSweepTest {
+
+    @Test
+    void requestPermitsBoundConcurrentChecks() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger checked = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch( 1 );
+        CountDownLatch fed = new CountDownLatch( 1 );
+
+        Thread source = Thread.ofVirtual().start( () -> {
+            try( VirtualSweep sweep = new VirtualSweep( 2, ( address, port ) -> {
+                maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+                try {
+                    release.await();
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                checked.incrementAndGet();
+            } ) ) {
+                for( int i = 0; i < 5; i++ ) {
+                    sweep.accept( 0x0A000001 + i, 1080 );
+                }
+                fed.countDown();
+            }
+        } );
+
+        // Третий адрес ждет места: источник не дочитан, пока две проверки не завершились
+        assertFalse( fed.await( 200, TimeUnit.MILLISECONDS ) );
+        assertEquals( 2, running.get() );
+
+        release.countDown();
+        assertTrue( fed.await( 5, TimeUnit.SECONDS ) );
+        source.join( 5000 );
+        assertEquals( 5, checked.get() ); // close() дождался всех проверок
+        assertEquals( 2, maxRunning.get() );
+    }
+}
@@ -0,0 +1,225 @@
+package com.proxychecker.service.cluster;
+
+import com.proxychecker.service.result.ProxyResultSet;
+import com.proxychecker.util.Endpoints;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterCoordinatorTest {
+
+    private static final int ENDPOINTS = 500;
+    private static final String TOKEN = "secret";
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch( 1 );
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @AfterEach
+    void stopServers() {
+        stopped.countDown();
+        servers.forEach( server -> server.stop( 0 ) );
+    }
+
+    @Test
+    void reassignsChunksOfFailedWorker() throws IOException {
+        AtomicInteger checked = new AtomicInteger();
+        String healthy = worker( 200, checked );
+        String broken = worker( 500, new AtomicInteger() );
+        AtomicInteger fallbackCalls = new AtomicInteger();
+
+        Queue<Long> working = sweep( healthy + "," + broken, 5000, ( endpoints, protocols ) -> {
+            fallbackCalls.incrementAndGet();
+            return results( endpoints );
+        } );
+
+        assertEquals( ENDPOINTS, working.size() );
+        assertEquals( ENDPOINTS, checked.get() );
+        assertEquals( ENDPOINTS, recorded.get() ); // Результаты исполнителей записаны на координаторе
+        assertEquals( 0, fallbackCalls.get() );
+        // Пачки упавшего исполнителя занимают места у здорового, как и новые
+        assertTrue( maxRunning.get() <= 2, "Chunks in work on the healthy worker: " + maxRunning.get() );
+    }
+
+    @Test
+    void reassignsChunksOfUnresponsiveWorker() throws IOException {
+        AtomicInteger checked = new AtomicInteger();
+        String healthy = worker( 200, checked );
+        AtomicInteger hungChunks = new AtomicInteger();
+        String hung = hungWorker( hungChunks );
+
+        long start = System.nanoTime();
+        Queue<Long> working = sweep( healthy + "," + hung, 300, ( endpoints, protocols ) -> {
+            throw new AssertionError( "Healthy worker is alive" );
+        } );
+
+        assertEquals( ENDPOINTS, working.size() );
+        assertEquals( ENDPOINTS, checked.get() );
+        // Новые адреса не ждут исполнителя, который не ответил: только пачки, отправленные до таймаута, и остаток
+        assertTrue( hungChunks.get() <= 4, "Chunks sent to the hung worker: " + hungChunks.get() );
+        assertTrue( TimeUnit.NANOSECONDS.toSeconds( System.nanoTime() - start ) < 5 );
+    }
+
+    @Test
+    void reassignsUnreadableChunk() throws IOException {
+        AtomicInteger checked = new AtomicInteger();
+        String healthy = worker( 200, checked );
+        String garbled = garbledWorker();
+
+        Queue<Long> working = sweep( healthy + "," + garbled, 5000, ( endpoints, protocols ) -> {
+            throw new AssertionError( "Healthy worker is alive" );
+        } );
+
+        assertEquals( ENDPOINTS, working.size() ); // Ни одна пачка не потерялась, finish не завис
+        assertEquals( ENDPOINTS, checked.get() );
+    }
+
+    @Test
+    void checksLocallyWhenNoWorkerResponds() throws IOException {
+        String broken = worker( 503, new AtomicInteger() );
+        AtomicInteger fallbackChecked = new AtomicInteger();
+
+        Queue<Long> working = sweep( broken, 5000, ( endpoints, protocols ) -> {
+            fallbackChecked.addAndGet( endpoints.length );
+            return results( endpoints );
+        } );
+
+        assertEquals( ENDPOINTS, working.size() );
+        assertEquals( ENDPOINTS, fallbackChecked.get() );
+        assertEquals( 0, recorded.get() ); // Локальная проверка записывает результаты сама
+    }
+
+    @Test
+    void coordinatorIsOffWithoutWorkers() {
+        ClusterCoordinator cluster = new ClusterCoordinator( " ", 100, 1000, 2, true, TOKEN );
+        assertTrue( cluster.isWorker() );
+        assertFalse( cluster.isCoordinator() );
+    }
+
+    @Test
+    void workerRequiresClusterToken() {
+        ClusterCoordinator cluster = new ClusterCoordinator( "", 100, 1000, 2, true, TOKEN );
+        assertTrue( cluster.isAuthorized( TOKEN ) );
+        assertFalse( cluster.isAuthorized( null ) );
+        assertFalse( cluster.isAuthorized( "guess" ) );
+
+        assertThrows( IllegalArgumentException.class, () -> new ClusterCoordinator( "", 100, 1000, 2, true, " " ) );
+        assertThrows( IllegalArgumentException.class, () -> new ClusterCoordinator( "http://127.0.0.1:1", 100, 1000, 2, false, "" ) );
+        assertFalse( new ClusterCoordinator( "", 100, 1000, 2, false, "" ).isAuthorized( "" ) );
+    }
+
+    private Queue<Long> sweep( String workers, long chunkTimeoutMillis, ClusterCoordinator.ChunkChecker fallback ) {
+        ClusterCoordinator cluster = new ClusterCoordinator( workers, 32, chunkTimeoutMillis, 2, false, TOKEN );
+        Queue<Long> working = new ConcurrentLinkedQueue<>();
+        ClusterSweep sweep = cluster.start( 0, ( address, port, type, latencyMicros, country ) ->
+                working.add( Endpoints.pack( address, port ) ), fallback,
+                ( chunk, results ) -> recorded.addAndGet( results.size() ) );
+        for( int i = 0; i < ENDPOINTS; i++ ) {
+            sweep.accept( 0x0A000000 | ( i << 8 ) | 1, 8080 ); // Каждый адрес — в своей подсети /24
+        }
+        sweep.finish( new CompletableFuture<>() );
+        return working;
+    }
+
+    // Исполнитель, который считает все адреса рабочими, или отвечает ошибкой; пачку без ключа кластера отклоняет
+    private String worker( int status, AtomicInteger checked ) throws IOException {
+        HttpServer server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.setExecutor( Executors.newVirtualThreadPerTaskExecutor() );
+        server.createContext( ClusterProtocol.WORKER_PATH, exchange -> {
+            long[] endpoints = ClusterProtocol.decode( exchange.getRequestBody().readAllBytes() );
+            int responseStatus = TOKEN.equals( exchange.getRequestHeaders().getFirst( ClusterProtocol.TOKEN_HEADER ) ) ? status : 401;
+            if( responseStatus != 200 ) {
+                exchange.sendResponseHeaders( responseStatus, -1 );
+                exchange.close();
+                return;
+            }
+            maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+            try {
+                Thread.sleep( 5 ); // Пачки в работе пересекаются во времени
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            checked.addAndGet( endpoints.length );
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            results( endpoints ).writeBinary( body );
+            exchange.sendResponseHeaders( 200, body.size() );
+            try( OutputStream out = exchange.getResponseBody() ) {
+                body.writeTo( out );
+            }
+        } );
+        server.start();
+        servers.add( server );
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Исполнитель, который принимает пачки и не отвечает до конца теста
+    private String hungWorker( AtomicInteger chunks ) throws IOException {
+        HttpServer server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.setExecutor( Executors.newVirtualThreadPerTaskExecutor() );
+        server.createContext( ClusterProtocol.WORKER_PATH, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            chunks.incrementAndGet();
+            try {
+                stopped.await();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        } );
+        server.start();
+        servers.add( server );
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Исполнитель, который отвечает выгрузкой с неизвестным типом прокси
+    private String garbledWorker() throws IOException {
+        HttpServer server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.createContext( ClusterProtocol.WORKER_PATH, exchange -> {
+            long[] endpoints = ClusterProtocol.decode( exchange.getRequestBody().readAllBytes() );
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            results( endpoints ).writeBinary( out );
+            byte[] body = out.toByteArray();
+            String text = new String( body, StandardCharsets.ISO_8859_1 );
+            body[text.indexOf( "HTTP" )] = 'X';
+            exchange.sendResponseHeaders( 200, body.length );
+            try( OutputStream response = exchange.getResponseBody() ) {
+                response.write( body );
+            }
+        } );
+        server.start();
+        servers.add( server );
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static ProxyResultSet results( long[] endpoints ) {
+        ProxyResultSet results = new ProxyResultSet();
+        for( long endpoint : endpoints ) {
+            results.add( Endpoints.address( endpoint ), Endpoints.port( endpoint ), "HTTP", 120_000, "US" );
+        }
+        return results;
+    }
+}
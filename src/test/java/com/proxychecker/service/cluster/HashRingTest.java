@@ -0,0 +1,54 @@
+package com.proxychecker.service.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final List<String> NODES = List.of( "http://a:8080", "http://b:8080", "http://c:8080" );
+
+    @Test
+    void spreadsKeysAcrossNodes() {
+        HashRing ring = new HashRing( NODES, 128 );
+        int[] counts = new int[NODES.size()];
+        for( int subnet = 0; subnet < 30_000; subnet++ ) {
+            counts[ring.owner( subnet, null )]++;
+        }
+        for( int count : counts ) {
+            assertTrue( count > 7_000 && count < 13_000, "Uneven share: " + count );
+        }
+    }
+
+    @Test
+    void addingNodeMovesOnlyItsShare() {
+        HashRing before = new HashRing( NODES, 128 );
+        HashRing after = new HashRing( List.of( "http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080" ), 128 );
+        int moved = 0;
+        for( int subnet = 0; subnet < 30_000; subnet++ ) {
+            int owner = after.owner( subnet, null );
+            if( owner != before.owner( subnet, null ) ) {
+                assertEquals( 3, owner ); // Ключи переезжают только на новый узел
+                moved++;
+            }
+        }
+        assertTrue( moved > 4_000 && moved < 11_000, "Moved: " + moved );
+    }
+
+    @Test
+    void skipsExcludedNodes() {
+        HashRing ring = new HashRing( NODES, 16 );
+        boolean[] excluded = new boolean[NODES.size()];
+        int key = 42;
+        int first = ring.owner( key, excluded );
+        excluded[first] = true;
+        int second = ring.owner( key, excluded );
+        assertTrue( second >= 0 && second != first );
+        excluded[second] = true;
+        excluded[3 - first - second] = true;
+        assertEquals( -1, ring.owner( key, excluded ) );
+    }
+}
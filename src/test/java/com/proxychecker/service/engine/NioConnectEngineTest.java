@@ -0,0 +1,69 @@
+package com.proxychecker.service.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static com.proxychecker.constants.AppConstants.HTTP_PROXY_ERROR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioConnectEngineTest {
+
+    private NioConnectEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NioConnectEngine( 4, 500, "127.0.0.1:443", 500 );
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void connectsToListeningPort() throws Exception {
+        try( ServerSocket server = new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() ) ) {
+            long responseTime = engine.connect( new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getLocalPort() ) ).get();
+            assertNotEquals( HTTP_PROXY_ERROR, responseTime );
+        }
+    }
+
+    @Test
+    void failsOnClosedPort() throws Exception {
+        int port;
+        try( ServerSocket server = new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() ) ) {
+            port = server.getLocalPort();
+        }
+        long responseTime = engine.connect( new InetSocketAddress( InetAddress.getLoopbackAddress(), port ) ).get();
+        assertEquals( HTTP_PROXY_ERROR, responseTime );
+    }
+
+    @Test
+    void failsOnUnresolvedAddress() throws Exception {
+        long responseTime = engine.connect( InetSocketAddress.createUnresolved( "invalid.invalid", 80 ) ).get();
+        assertEquals( HTTP_PROXY_ERROR, responseTime );
+    }
+
+    @Test
+    void completesMoreConnectsThanInFlightLimit() throws Exception {
+        try( ServerSocket server = new ServerSocket( 0, 200, InetAddress.getLoopbackAddress() ) ) {
+            InetSocketAddress address = new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getLocalPort() );
+            List<CompletableFuture<Long>> futures = IntStream.range( 0, 100 )
+                    .mapToObj( i -> engine.connect( address ) )
+                    .toList();
+
+            CompletableFuture.allOf( futures.toArray( CompletableFuture[]::new ) ).get();
+            assertTrue( futures.stream().allMatch( f -> f.join() != HTTP_PROXY_ERROR ) );
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.proxychecker.service.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProxyHandshakeTest {
+
+    private NioConnectEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NioConnectEngine( 4, 500, "1.1.1.1:443", 500 );
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void verifiesEachProtocol() throws Exception {
+        for( ProxyProtocol protocol : ProxyProtocol.values() ) {
+            try( StubProxyServer server = new StubProxyServer( protocol ) ) {
+                ProbeResult result = engine.probe( server.address(), protocol.mask() ).get();
+                assertTrue( result.isSuccess(), protocol.name() );
+                assertEquals( protocol, result.protocol() );
+            }
+        }
+    }
+
+    @Test
+    void detectsProtocolByTryingEachInTurn() throws Exception {
+        try( StubProxyServer server = new StubProxyServer( ProxyProtocol.SOCKS5 ) ) {
+            ProbeResult result = engine.probe( server.address(), ProxyProtocol.ALL ).get();
+            assertEquals( ProxyProtocol.SOCKS5, result.protocol() );
+        }
+        try( StubProxyServer server = new StubProxyServer( ProxyProtocol.HTTP ) ) {
+            assertFalse( engine.probe( server.address(), ProxyProtocol.SOCKS4.mask() | ProxyProtocol.SOCKS5.mask() ).get().isSuccess() );
+        }
+    }
+
+    @Test
+    void rejectsOpenPortThatIsNotProxy() throws Exception {
+        try( StubProxyServer server = new StubProxyServer( null ) ) {
+            assertFalse( engine.probe( server.address(), ProxyProtocol.ALL ).get().isSuccess() );
+            // Без рукопожатия открытый порт считается рабочим
+            assertTrue( engine.probe( server.address(), ProxyProtocol.NONE ).get().isSuccess() );
+        }
+    }
+
+    @Test
+    void verifiesOverBlockingSocket() throws Exception {
+        ProxyHandshake handshake = ProxyHandshake.forTarget( "1.1.1.1:443" );
+        try( StubProxyServer server = new StubProxyServer( ProxyProtocol.SOCKS5 );
+             Socket socket = new Socket() ) {
+            socket.connect( server.address(), 500 );
+            socket.setSoTimeout( 500 );
+            assertTrue( handshake.exchange( ProxyProtocol.SOCKS5, socket.getInputStream(), socket.getOutputStream(),
+                    new byte[ProxyHandshake.BUFFER_SIZE] ) );
+        }
+    }
+}
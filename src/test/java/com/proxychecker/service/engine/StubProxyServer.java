@@ -0,0 +1,100 @@
+package com.proxychecker.service.engine;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Локальный прокси-заглушка: отвечает на рукопожатие одного протокола и закрывает соединение
+ * при любом другом запросе. Без протокола — открытый порт, который отвечает баннером, как SSH.
+ */
+class StubProxyServer implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final ProxyProtocol protocol;
+
+    StubProxyServer( ProxyProtocol protocol ) throws IOException {
+        this.server = new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+        this.protocol = protocol;
+        Thread.ofVirtual().start( this::acceptLoop );
+    }
+
+    InetSocketAddress address() {
+        return new InetSocketAddress( InetAddress.getLoopbackAddress(), server.getLocalPort() );
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while( ! server.isClosed() ) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofVirtual().start( () -> serve( socket ) );
+            } catch( IOException e ) {
+                return;
+            }
+        }
+    }
+
+    private void serve( Socket socket ) {
+        try( socket ) {
+            DataInputStream in = new DataInputStream( socket.getInputStream() );
+            OutputStream out = socket.getOutputStream();
+            if( protocol == null ) {
+                out.write( "SSH-2.0-OpenSSH_9.6\r\n".getBytes( StandardCharsets.US_ASCII ) );
+                in.read();
+                return;
+            }
+            switch( protocol ) {
+                case HTTP -> {
+                    if( readHeaders( in ).startsWith( "CONNECT " ) ) {
+                        out.write( "HTTP/1.1 200 Connection established\r\n\r\n".getBytes( StandardCharsets.US_ASCII ) );
+                    }
+                }
+                case SOCKS4 -> {
+                    byte[] request = new byte[9];
+                    in.readFully( request );
+                    if( request[0] == 4 && request[1] == 1 ) {
+                        out.write( new byte[]{ 0, 90, 0, 0, 0, 0, 0, 0 } );
+                    }
+                }
+                case SOCKS5 -> {
+                    byte[] greeting = new byte[3];
+                    in.readFully( greeting );
+                    if( greeting[0] != 5 ) {
+                        return;
+                    }
+                    out.write( new byte[]{ 5, 0 } );
+                    byte[] request = new byte[10];
+                    in.readFully( request );
+                    out.write( new byte[]{ 5, 0, 0, 1, 0, 0, 0, 0, 0, 0 } );
+                }
+            }
+            out.flush();
+            in.read(); // Держим соединение, пока клиент его не закроет
+        } catch( IOException ignored ) {
+            // Клиент закрыл соединение
+        }
+    }
+
+    private static String readHeaders( InputStream in ) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        int b;
+        while( ( b = in.read() ) >= 0 ) {
+            headers.append( (char) b );
+            if( headers.length() > 1024 || headers.toString().endsWith( "\r\n\r\n" ) ) {
+                break;
+            }
+        }
+        return headers.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package com.proxychecker.service.geo;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.proxychecker.constants.AppConstants.COUNTRY_UNKNOWN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GeoIpBatcherTest {
+
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch( 1 );
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Заглушка geojs: страна — последний октет адреса в виде "Cn", адреса на .0 неизвестны
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.createContext( "/v1/ip/country.json", exchange -> {
+            String ips = exchange.getRequestURI().getQuery().substring( "ip=".length() );
+            queries.add( ips );
+            List<String> items = new ArrayList<>();
+            for( String ip : ips.split( "," ) ) {
+                String octet = ip.substring( ip.lastIndexOf( '.' ) + 1 );
+                if( ! octet.equals( "0" ) ) {
+                    items.add( "{\"ip\":\"" + ip + "\",\"country\":\"C" + octet + "\"}" );
+                }
+            }
+            byte[] body = ( "[" + String.join( ",", items ) + "]" ).getBytes( StandardCharsets.UTF_8 );
+            exchange.sendResponseHeaders( 200, body.length );
+            exchange.getResponseBody().write( body );
+            exchange.close();
+        } );
+        // Запрос, на который geojs не отвечает
+        server.createContext( "/stalled/v1/ip/country.json", exchange -> {
+            try {
+                stopped.await();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        } );
+        server.setExecutor( Executors.newVirtualThreadPerTaskExecutor() );
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void tearDown() {
+        stopped.countDown();
+        server.stop( 0 );
+    }
+
+    @Test
+    void sendsFullBatchesAsSingleRequests() {
+        try( GeoIpBatcher batcher = new GeoIpBatcher( HttpClient.newHttpClient(), baseUrl, 5, 60_000 ) ) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for( int i = 1; i <= 10; i++ ) {
+                futures.add( batcher.lookup( "10.0.0." + i ) );
+            }
+
+            for( int i = 1; i <= 10; i++ ) {
+                assertEquals( "C" + i, futures.get( i - 1 ).join() );
+            }
+            assertEquals( 2, batcher.requests() );
+            assertEquals( 2, queries.size() );
+        }
+    }
+
+    @Test
+    void flushesPartialBatchAfterWindow() {
+        try( GeoIpBatcher batcher = new GeoIpBatcher( HttpClient.newHttpClient(), baseUrl, 100, 20 ) ) {
+            CompletableFuture<String> first = batcher.lookup( "10.0.0.1" );
+            CompletableFuture<String> duplicate = batcher.lookup( "10.0.0.1" );
+            CompletableFuture<String> unknown = batcher.lookup( "10.0.0.0" );
+
+            assertEquals( "C1", first.join() );
+            assertEquals( "C1", duplicate.join() );
+            assertEquals( COUNTRY_UNKNOWN, unknown.join() );
+            assertEquals( List.of( "10.0.0.1,10.0.0.0" ), queries );
+        }
+    }
+
+    @Test
+    void completesWithUnknownWhenApiStalls() {
+        try( GeoIpBatcher batcher = new GeoIpBatcher( HttpClient.newHttpClient(), baseUrl + "stalled/", 1, 20, 200 ) ) {
+            assertEquals( COUNTRY_UNKNOWN, batcher.lookup( "10.0.0.1" ).orTimeout( 5, TimeUnit.SECONDS ).join() );
+        }
+    }
+
+    @Test
+    void malformedAddressDoesNotBreakBatch() {
+        try( GeoIpBatcher batcher = new GeoIpBatcher( HttpClient.newHttpClient(), baseUrl, 2, 60_000 ) ) {
+            CompletableFuture<String> valid = batcher.lookup( "10.0.0.1" );
+            CompletableFuture<String> malformed = batcher.lookup( "not an ip" );
+
+            assertEquals( "C1", valid.orTimeout( 5, TimeUnit.SECONDS ).join() );
+            malformed.orTimeout( 5, TimeUnit.SECONDS ).join();
+        }
+    }
+
+    @Test
+    void completesWithUnknownWhenApiIsUnreachable() {
+        server.stop( 0 );
+        try( GeoIpBatcher batcher = new GeoIpBatcher( HttpClient.newHttpClient(), baseUrl, 1, 20 ) ) {
+            assertEquals( COUNTRY_UNKNOWN, batcher.lookup( "10.0.0.1" ).join() );
+        }
+    }
+}
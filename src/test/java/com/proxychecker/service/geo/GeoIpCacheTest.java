@@ -0,0 +1,53 @@
+package com.proxychecker.service.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GeoIpCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        GeoIpCache cache = new GeoIpCache( 2, 1_000, clock::get );
+        cache.put( 1, "US" );
+        cache.put( 2, "DE" );
+        cache.get( 1 ); // 2 становится самой старой записью
+        cache.put( 3, "FR" );
+
+        assertEquals( "US", cache.get( 1 ) );
+        assertNull( cache.get( 2 ) );
+        assertEquals( "FR", cache.get( 3 ) );
+        assertEquals( 1, cache.evictions() );
+    }
+
+    @Test
+    void expiresByTtl() {
+        GeoIpCache cache = new GeoIpCache( 4, 1_000, clock::get );
+        cache.put( 1, "US" );
+        clock.set( 1_000 );
+        assertEquals( "US", cache.get( 1 ) );
+        clock.set( 1_001 );
+        assertNull( cache.get( 1 ) );
+        assertEquals( 0, cache.size() );
+        assertEquals( 1, cache.hits() );
+        assertEquals( 1, cache.misses() );
+    }
+
+    @Test
+    void keepsIndexConsistentUnderChurn() {
+        GeoIpCache cache = new GeoIpCache( 64, Long.MAX_VALUE / 2, clock::get );
+        for( int address = 0; address < 10_000; address++ ) {
+            cache.put( address * 256, "C" + address );
+        }
+        for( int address = 10_000 - 64; address < 10_000; address++ ) {
+            assertEquals( "C" + address, cache.get( address * 256 ) );
+        }
+        assertNull( cache.get( 0 ) );
+        assertEquals( 64, cache.size() );
+    }
+}
@@ -0,0 +1,58 @@
+package com.proxychecker.service.geo;
+
+import com.proxychecker.util.Ipv4;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpRangeCountryResolverTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resolvesCountryFromCompiledRanges() throws Exception {
+        Path csv = directory.resolve( "ranges.csv" );
+        Files.writeString( csv, """
+                start,end,country
+                # комментарий
+                200.0.0.0,200.255.255.255,BR
+                1.0.0.0,1.0.0.255,AU
+                "8.8.8.0","8.8.8.255","us"
+                3758096384,4294967295,ZZ
+                2001:db8::,2001:db8::ffff,DE
+                """ );
+
+        IpRangeCountryResolver resolver = IpRangeCountryResolver.open( csv );
+
+        assertEquals( 4, resolver.size() );
+        assertTrue( Files.exists( directory.resolve( "ranges.csv.bin" ) ) );
+        assertEquals( "AU", resolver.resolve( address( "1.0.0.0" ) ) );
+        assertEquals( "AU", resolver.resolve( address( "1.0.0.255" ) ) );
+        assertEquals( "US", resolver.resolve( address( "8.8.8.8" ) ) );
+        assertEquals( "BR", resolver.resolve( address( "200.10.20.30" ) ) );
+        assertEquals( "ZZ", resolver.resolve( address( "255.255.255.255" ) ) );
+        assertNull( resolver.resolve( address( "1.0.1.0" ) ) );
+        assertNull( resolver.resolve( address( "0.0.0.1" ) ) );
+    }
+
+    @Test
+    void opensAlreadyCompiledDatabase() throws Exception {
+        Path csv = directory.resolve( "ranges.csv" );
+        Path compiled = directory.resolve( "ranges.bin" );
+        Files.writeString( csv, "10.0.0.0,10.255.255.255,NL\n" );
+        IpRangeCountryResolver.compile( csv, compiled );
+
+        assertEquals( "NL", IpRangeCountryResolver.open( compiled ).resolve( address( "10.1.2.3" ) ) );
+    }
+
+    private static int address( String ip ) {
+        return (int) Ipv4.parse( ip );
+    }
+}
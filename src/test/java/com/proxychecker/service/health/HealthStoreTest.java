@@ -0,0 +1,100 @@
+package com.proxychecker.service.health;
+
+import com.proxychecker.service.engine.ProxyProtocol;
+import com.proxychecker.util.Endpoints;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HealthStoreTest {
+
+    private static final long MINUTE = 60_000;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong( 1_700_000_000_000L );
+
+    @Test
+    void recoversLastStateFromLog() throws IOException {
+        Path log = directory.resolve( "health.log" );
+        HealthStore store = store( log );
+        store.recordSuccess( 1, 8080, 120, "DE", null );
+        store.recordSuccess( 1, 8080, 80, "DE", ProxyProtocol.SOCKS5 );
+        store.recordFailure( 2, 1080 );
+        store.close();
+
+        // Недописанная запись в конце журнала отбрасывается
+        try( FileChannel channel = FileChannel.open( log, StandardOpenOption.APPEND ) ) {
+            channel.write( ByteBuffer.wrap( new byte[]{ 1, 2, 3 } ) );
+        }
+
+        HealthStore recovered = store( log );
+        HealthRecord alive = recovered.get( 1, 8080 );
+        assertEquals( 80, alive.latencyMillis() );
+        assertEquals( 2, alive.streak() );
+        assertEquals( "DE", alive.country() );
+        assertEquals( ProxyProtocol.SOCKS5, alive.protocol() );
+        assertEquals( -1, recovered.get( 2, 1080 ).streak() );
+        assertNull( recovered.get( 3, 80 ) );
+        assertEquals( 2, recovered.size() );
+
+        recovered.recordSuccess( 3, 80, 50, "US", null );
+        recovered.close();
+        assertEquals( 0, ( Files.size( log ) - 8 ) % 32 );
+        assertEquals( 3, store( log ).size() );
+    }
+
+    @Test
+    void backsOffDeadProxiesExponentially() {
+        HealthStore store = store( null );
+        store.recordFailure( 1, 80 );
+        store.recordFailure( 1, 80 );
+        store.recordFailure( 1, 80 ); // Пауза 10 * 2^2 = 40 минут
+
+        clock.addAndGet( 39 * MINUTE );
+        assertFalse( store.isDue( store.get( 1, 80 ) ) );
+        clock.addAndGet( MINUTE );
+        assertTrue( store.isDue( store.get( 1, 80 ) ) );
+
+        // Пауза не больше предела
+        for( int i = 0; i < 40; i++ ) {
+            store.recordFailure( 1, 80 );
+        }
+        clock.addAndGet( 60 * MINUTE );
+        assertTrue( store.isDue( store.get( 1, 80 ) ) );
+    }
+
+    @Test
+    void prioritizesAliveProxies() {
+        HealthStore store = store( null );
+        store.recordFailure( 1, 80 );
+        clock.addAndGet( 1000 );
+        store.recordSuccess( 2, 80, 100, "US", null );
+        clock.addAndGet( 1000 );
+        store.recordSuccess( 3, 80, 100, "US", null );
+        store.recordFailure( 4, 80 );
+        assertEquals( 0, store.dueEndpoints( 10 ).length );
+
+        clock.addAndGet( 20 * MINUTE );
+        assertArrayEquals( new long[]{ Endpoints.pack( 2, 80 ), Endpoints.pack( 3, 80 ), Endpoints.pack( 1, 80 ) },
+                store.dueEndpoints( 3 ) );
+    }
+
+    private HealthStore store( Path log ) {
+        return new HealthStore( log, 10 * MINUTE, 10 * MINUTE, 60 * MINUTE, clock::get );
+    }
+}
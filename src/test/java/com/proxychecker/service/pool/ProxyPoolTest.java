@@ -0,0 +1,69 @@
+package com.proxychecker.service.pool;
+
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.util.Endpoints;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProxyPoolTest {
+
+    @Test
+    void returnsFastestMatchingProxies() {
+        ProxyPool pool = new ProxyPool( 100 );
+        offer( pool, 1, 300, "SOCKS5", "US" );
+        offer( pool, 2, 100, "SOCKS5", "DE" );
+        offer( pool, 3, 200, "SOCKS5", "US" );
+        offer( pool, 4, 50, "HTTP", "US" );
+
+        assertEquals( List.of( 4, 2 ), ports( pool.best( null, null, 2 ) ) );
+        assertEquals( List.of( 3, 1 ), ports( pool.best( "socks5", "us", 10 ) ) );
+        assertEquals( List.of( 4, 3, 1 ), ports( pool.best( "ALL", "US", 10 ) ) );
+        assertEquals( List.of( 2, 3, 1 ), ports( pool.best( "SOCKS5", "", 10 ) ) );
+        assertTrue( pool.best( "SOCKS4", null, 10 ).isEmpty() );
+    }
+
+    @Test
+    void evictsFailedAndReordersUpdatedProxies() {
+        ProxyPool pool = new ProxyPool( 100 );
+        offer( pool, 1, 100, "HTTP", "US" );
+        offer( pool, 2, 200, "HTTP", "US" );
+
+        offer( pool, 1, 500, "HTTP", "US" );
+        assertEquals( List.of( 2, 1 ), ports( pool.best( "HTTP", "US", 10 ) ) );
+        assertEquals( 2, pool.size() );
+
+        pool.evict( Endpoints.pack( 1, 1 ) );
+        assertEquals( List.of( 2 ), ports( pool.best( "HTTP", "US", 10 ) ) );
+        assertEquals( List.of( 2 ), ports( pool.best( null, null, 10 ) ) );
+        assertEquals( 1, pool.getStats().getEvicted() );
+    }
+
+    @Test
+    void dropsSlowestWhenFull() {
+        ProxyPool pool = new ProxyPool( 2 );
+        offer( pool, 1, 100, "HTTP", "US" );
+        offer( pool, 2, 900, "HTTP", "US" );
+        offer( pool, 3, 200, "HTTP", "DE" );
+
+        assertEquals( 2, pool.size() );
+        assertEquals( List.of( 1, 3 ), ports( pool.best( null, null, 10 ) ) );
+        assertEquals( List.of( 1 ), ports( pool.best( null, "US", 10 ) ) );
+
+        // Медленнее всех в заполненном пуле — не добавляется
+        offer( pool, 4, 300, "HTTP", "US" );
+        assertEquals( List.of( 1, 3 ), ports( pool.best( null, null, 10 ) ) );
+        assertEquals( 3, pool.getStats().getAdded() );
+    }
+
+    private static void offer( ProxyPool pool, int port, int latencyMillis, String type, String country ) {
+        pool.offer( Endpoints.pack( 1, port ), latencyMillis, type, country );
+    }
+
+    private static List<Integer> ports( List<ProxyDto> proxies ) {
+        return proxies.stream().map( ProxyDto::getPort ).toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.proxychecker.service.result;
+
+import com.proxychecker.dto.ProxyDto;
+import com.proxychecker.util.Ipv4;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProxyResultSetTest {
+
+    @Test
+    void pagesInInsertionAndSortedOrder() {
+        ProxyResultSet results = sample();
+
+        assertEquals( List.of( "10.0.0.1", "200.1.1.1" ), hosts( results.page( 0, 2, null, false ) ) );
+        assertEquals( List.of( "1.2.3.4" ), hosts( results.page( 2, 2, null, false ) ) );
+        assertEquals( List.of( "1.2.3.4", "10.0.0.1", "200.1.1.1" ), hosts( results.page( 0, 10, ProxyResultSet.SORT_HOST, false ) ) );
+        assertEquals( List.of( "200.1.1.1", "1.2.3.4", "10.0.0.1" ), hosts( results.page( 0, 10, ProxyResultSet.SORT_RESPONSE_TIME, true ) ) );
+        assertEquals( List.of( "1.2.3.4" ), hosts( results.page( 1, 1, ProxyResultSet.SORT_COUNTRY, false ) ) );
+        assertEquals( List.of(), results.page( 5, 10, null, false ) );
+        assertThrows( IllegalArgumentException.class, () -> results.page( 0, 10, "password", false ) );
+    }
+
+    @Test
+    void restoresDtoFields() {
+        ProxyDto proxy = sample().get( 1 );
+        assertEquals( "200.1.1.1", proxy.getHost() );
+        assertEquals( 1080, proxy.getPort() );
+        assertEquals( "SOCKS5", proxy.getProxyType() );
+        assertEquals( new BigDecimal( "0.250" ), proxy.getResponseTime() );
+        assertEquals( "US", proxy.getCountry() );
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        ProxyResultSet results = new ProxyResultSet( 16 );
+        for( int i = 0; i < 1000; i++ ) {
+            results.add( i, 8080, "HTTP", 1000 - i, "DE" );
+        }
+        assertEquals( 1000, results.size() );
+        assertEquals( Ipv4.toString( 999 ), results.page( 0, 1, ProxyResultSet.SORT_RESPONSE_TIME, false ).get( 0 ).getHost() );
+    }
+
+    @Test
+    void roundTripsBinaryExport() throws Exception {
+        ProxyResultSet results = sample();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        results.writeBinary( out );
+
+        ProxyResultSet restored = ProxyResultSet.readBinary( new ByteArrayInputStream( out.toByteArray() ) );
+        assertEquals( results.page( 0, 10, null, false ), restored.page( 0, 10, null, false ) );
+        // Строк больше, чем могло прийти, — ошибка до выделения колонок
+        assertThrows( IOException.class, () -> ProxyResultSet.readBinary( new ByteArrayInputStream( out.toByteArray() ), 2 ) );
+    }
+
+    @Test
+    void writesOneJsonObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sample().writeNdjson( out );
+
+        String[] lines = out.toString( StandardCharsets.UTF_8 ).split( "\n" );
+        assertEquals( 3, lines.length );
+        assertEquals( "{\"host\":\"200.1.1.1\",\"port\":1080,\"proxyType\":\"SOCKS5\",\"responseTime\":0.250,\"country\":\"US\"}", lines[1] );
+    }
+
+    private static ProxyResultSet sample() {
+        ProxyResultSet results = new ProxyResultSet();
+        results.add( new ProxyDto().setHost( "10.0.0.1" ).setPort( 80 ).setProxyType( "HTTP" )
+                .setResponseTime( new BigDecimal( "0.015" ) ).setCountry( "DE" ) );
+        results.add( (int) Ipv4.parse( "200.1.1.1" ), 1080, "SOCKS5", 250_000, "US" );
+        results.add( (int) Ipv4.parse( "1.2.3.4" ), 3128, "HTTPS", 120_000, "FR" );
+        return results;
+    }
+
+    private static List<String> hosts( List<ProxyDto> proxies ) {
+        return proxies.stream().map( ProxyDto::getHost ).toList();
+    }
+}
@@ -0,0 +1,170 @@
+package com.proxychecker.service.source;
+
+import com.proxychecker.util.Endpoints;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceFetcherTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private String url;
+    private volatile String list = "1.1.1.1:80\n2.2.2.2:1080\n";
+    private volatile int status = 200;
+    private volatile String ifNoneMatch;
+    private volatile boolean trickle;
+    private final CountDownLatch stopped = new CountDownLatch( 1 );
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.createContext( "/list.txt", exchange -> {
+            ifNoneMatch = exchange.getRequestHeaders().getFirst( "If-None-Match" );
+            if( trickle ) {
+                // Заголовки и первая строка сразу, остальное — никогда
+                exchange.sendResponseHeaders( 200, 0 );
+                OutputStream out = exchange.getResponseBody();
+                out.write( "1.1.1.1:80\n".getBytes( StandardCharsets.US_ASCII ) );
+                out.flush();
+                try {
+                    stopped.await();
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if( status != 200 ) {
+                exchange.sendResponseHeaders( status, -1 );
+            } else if( etag().equals( ifNoneMatch ) ) {
+                exchange.sendResponseHeaders( 304, -1 );
+            } else {
+                byte[] body = list.getBytes( StandardCharsets.US_ASCII );
+                exchange.getResponseHeaders().set( "ETag", etag() );
+                exchange.sendResponseHeaders( 200, body.length );
+                try( OutputStream out = exchange.getResponseBody() ) {
+                    out.write( body );
+                }
+            }
+            exchange.close();
+        } );
+        server.setExecutor( Executors.newVirtualThreadPerTaskExecutor() );
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/list.txt";
+    }
+
+    @AfterEach
+    void stopServer() {
+        stopped.countDown();
+        server.stop( 0 );
+    }
+
+    @Test
+    void servesSnapshotWhenNotModified() throws InterruptedException {
+        SourceFetcher fetcher = new SourceFetcher( dir, Duration.ofSeconds( 5 ), Duration.ofSeconds( 5 ) );
+
+        List<String> first = new ArrayList<>();
+        SourceFetch downloaded = fetcher.fetch( url, ( address, port ) -> first.add( Endpoints.toString( address, port ) ) );
+        assertEquals( SourceFetch.Status.DOWNLOADED, downloaded.status() );
+        assertNull( ifNoneMatch );
+
+        List<String> second = new ArrayList<>();
+        SourceFetch cached = fetcher.fetch( url, ( address, port ) -> second.add( Endpoints.toString( address, port ) ) );
+        assertEquals( SourceFetch.Status.NOT_MODIFIED, cached.status() );
+        assertEquals( etag(), ifNoneMatch );
+        assertEquals( first, second );
+    }
+
+    @Test
+    void reportsAddedAndRemovedEndpoints() throws InterruptedException {
+        SourceFetcher fetcher = new SourceFetcher( dir, Duration.ofSeconds( 5 ), Duration.ofSeconds( 5 ) );
+        assertEquals( 2, fetcher.fetch( url, ( address, port ) -> { } ).added() );
+
+        list = "2.2.2.2:1080\n3.3.3.3:8080\n4.4.4.4:3128\n3.3.3.3:8080\n";
+        SourceFetch changed = fetcher.fetch( url, ( address, port ) -> { } );
+        assertEquals( SourceFetch.Status.DOWNLOADED, changed.status() );
+        assertEquals( 2, changed.added() );
+        assertEquals( 1, changed.removed() );
+        assertEquals( 4, changed.parser().parsed() );
+    }
+
+    @Test
+    void sendsNewEndpointsBeforeUnchanged() throws InterruptedException, IOException {
+        SourceFetcher fetcher = new SourceFetcher( dir, Duration.ofSeconds( 5 ), Duration.ofSeconds( 5 ) );
+        fetcher.fetch( url, ( address, port ) -> { } );
+
+        list = "2.2.2.2:1080\n3.3.3.3:8080\n";
+        List<String> order = new ArrayList<>();
+        fetcher.fetch( url, ( address, port ) -> order.add( "new " + Endpoints.toString( address, port ) ),
+                ( address, port ) -> order.add( "old " + Endpoints.toString( address, port ) ) );
+        assertEquals( List.of( "new 3.3.3.3:8080", "old 2.2.2.2:1080" ), order );
+
+        // Список из снимка целиком состоит из прежних адресов
+        List<String> cached = new ArrayList<>();
+        fetcher.fetch( url, ( address, port ) -> cached.add( "new " + Endpoints.toString( address, port ) ),
+                ( address, port ) -> cached.add( "old " + Endpoints.toString( address, port ) ) );
+        assertEquals( List.of( "old 2.2.2.2:1080", "old 3.3.3.3:8080" ), cached );
+
+        try( Stream<Path> files = Files.list( dir ) ) {
+            assertTrue( files.noneMatch( file -> file.toString().endsWith( ".part" ) ) );
+        }
+    }
+
+    @Test
+    void fallsBackToSnapshotWhenSourceFails() throws InterruptedException {
+        SourceFetcher fetcher = new SourceFetcher( dir, Duration.ofSeconds( 5 ), Duration.ofSeconds( 5 ) );
+        fetcher.fetch( url, ( address, port ) -> { } );
+
+        status = 503;
+        List<String> endpoints = new ArrayList<>();
+        SourceFetch fallback = fetcher.fetch( url, ( address, port ) -> endpoints.add( Endpoints.toString( address, port ) ) );
+        assertEquals( SourceFetch.Status.SNAPSHOT_FALLBACK, fallback.status() );
+        assertEquals( List.of( "1.1.1.1:80", "2.2.2.2:1080" ), endpoints );
+
+        assertThrows( UncheckedIOException.class,
+                () -> new SourceFetcher( dir.resolve( "empty" ), Duration.ofSeconds( 5 ), Duration.ofSeconds( 5 ) ).fetch( url, ( address, port ) -> { } ) );
+    }
+
+    @Test
+    void fallsBackToSnapshotWhenBodyStalls() throws InterruptedException {
+        SourceFetcher fetcher = new SourceFetcher( dir, Duration.ofSeconds( 5 ), Duration.ofMillis( 300 ) );
+        fetcher.fetch( url, ( address, port ) -> { } );
+
+        trickle = true;
+        List<String> endpoints = new ArrayList<>();
+        long start = System.nanoTime();
+        SourceFetch fallback = fetcher.fetch( url, ( address, port ) -> endpoints.add( Endpoints.toString( address, port ) ) );
+
+        assertEquals( SourceFetch.Status.SNAPSHOT_FALLBACK, fallback.status() );
+        assertTrue( Duration.ofNanos( System.nanoTime() - start ).toMillis() < 5000 );
+        // Адрес, пришедший до обрыва, был в снимке и отдается один раз — из снимка
+        assertEquals( List.of( "1.1.1.1:80", "2.2.2.2:1080" ), endpoints );
+    }
+
+    // Версия списка меняется вместе с содержимым
+    private String etag() {
+        return "\"" + Integer.toHexString( list.hashCode() ) + "\"";
+    }
+}
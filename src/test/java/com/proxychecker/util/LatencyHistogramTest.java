@@ -0,0 +1,31 @@
+package com.proxychecker.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    @Test
+    void estimatesPercentilesWithBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram( 3000, 10 );
+        assertEquals( -1, histogram.percentile( 0.5 ) );
+
+        for( int millis = 1; millis <= 100; millis++ ) {
+            histogram.record( millis );
+        }
+        assertEquals( 100, histogram.count() );
+        assertEquals( 60, histogram.percentile( 0.5 ) ); // 50 лежит в корзине [50, 60)
+        assertEquals( 100, histogram.percentile( 0.95 ) );
+        assertEquals( 10, histogram.percentile( 0 ) );
+    }
+
+    @Test
+    void clampsValuesAboveRangeToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram( 3000, 10 );
+        histogram.record( 10_000 );
+        histogram.record( -5 );
+        assertEquals( 10, histogram.percentile( 0.5 ) );
+        assertEquals( 3000, histogram.percentile( 1 ) );
+    }
+}
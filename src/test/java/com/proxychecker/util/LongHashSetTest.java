@@ -0,0 +1,40 @@
+package com.proxychecker.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+    @Test
+    void deduplicatesEndpointsAcrossResizes() {
+        LongHashSet set = new LongHashSet( 16 );
+        for( int i = 0; i < 100_000; i++ ) {
+            assertTrue( set.add( Endpoints.pack( i * 7919, 8080 ) ) );
+        }
+        for( int i = 0; i < 100_000; i++ ) {
+            assertFalse( set.add( Endpoints.pack( i * 7919, 8080 ) ) );
+        }
+        assertEquals( 100_000, set.size() );
+        assertFalse( set.contains( Endpoints.pack( 1, 8081 ) ) );
+    }
+
+    @Test
+    void storesZero() {
+        LongHashSet set = new LongHashSet( 16 );
+        assertFalse( set.contains( 0 ) );
+        assertTrue( set.add( 0 ) );
+        assertFalse( set.add( 0 ) );
+        assertTrue( set.contains( 0 ) );
+        assertEquals( 1, set.size() );
+    }
+
+    @Test
+    void packsEndpoints() {
+        long endpoint = Endpoints.pack( (int) Ipv4.parse( "255.1.2.3" ), 65535 );
+        assertEquals( "255.1.2.3", Ipv4.toString( Endpoints.address( endpoint ) ) );
+        assertEquals( 65535, Endpoints.port( endpoint ) );
+    }
+}